@@ -0,0 +1,57 @@
+package asteroid;
+
+import java.util.Random;
+
+/**
+ * Helpers shared by the benchmarks.
+ *
+ * @author Daniel Ge
+ */
+final class BenchmarkWorlds {
+    static final int WIDTH = 640, HEIGHT = 480;
+
+    private BenchmarkWorlds() {
+    }
+
+    /**
+     * Creates a new World and fills it with Asteroids of every size, spread
+     * out at random, until it holds the given number of GameObjects.
+     *
+     * @param entities  Number of GameObjects in the World
+     * @param seed      Seed for the World and for the positions and directions
+     *                  of the Asteroids
+     * @return          The new World
+     */
+    static World create(int entities, long seed) {
+        return create(entities, seed, 1);
+    }
+
+    /**
+     * Creates a new World with the given number of players, filled with
+     * Asteroids as by {@link #create(int, long)}.
+     *
+     * @param entities  Number of GameObjects in the World
+     * @param seed      Seed for the World and the Asteroids
+     * @param players   Number of players
+     * @return          The new World
+     */
+    static World create(int entities, long seed, int players) {
+        World world = new World(WIDTH, HEIGHT, seed, players);
+        Random random = new Random(seed);
+
+        for (int n = 0; world.size() < entities; n++) {
+            int x = random.nextInt(WIDTH);
+            int y = random.nextInt(HEIGHT);
+            double angle = random.nextDouble() * 2 * Math.PI;
+
+            Asteroid a;
+            switch (n % 3) {
+                case 0:  a = Asteroid.createBigAsteroid(world, x, y, angle); break;
+                case 1:  a = Asteroid.createMediumAsteroid(world, x, y, angle); break;
+                default: a = Asteroid.createSmallAsteroid(world, x, y, angle); break;
+            }
+            a.addToGlobalList();
+        }
+        return world;
+    }
+}
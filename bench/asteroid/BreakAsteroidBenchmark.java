@@ -0,0 +1,51 @@
+package asteroid;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures Asteroid.breakAsteroid() for big and medium Asteroids. Run with
+ * {@code -prof gc} (the default bench.args in build.xml) to see the
+ * allocation rate per operation. Each operation also creates and destroys
+ * the Asteroid being broken.
+ *
+ * @author Daniel Ge
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BreakAsteroidBenchmark {
+    private World world;
+
+    @Setup
+    public void setUp() {
+        world = BenchmarkWorlds.create(0, 42);
+    }
+
+    @Benchmark
+    public List<Asteroid> breakBig() {
+        Asteroid a = Asteroid.createBigAsteroid(world, 320, 240, 0.0);
+        a.destroy();
+        return a.breakAsteroid();
+    }
+
+    @Benchmark
+    public List<Asteroid> breakMedium() {
+        Asteroid a = Asteroid.createMediumAsteroid(world, 320, 240, 0.0);
+        a.destroy();
+        return a.breakAsteroid();
+    }
+}
@@ -0,0 +1,54 @@
+package asteroid;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of GameObject.intersect() over a fixed set of
+ * pairs of GameObjects, some of which intersect and some of which do not.
+ *
+ * @author Daniel Ge
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class IntersectBenchmark {
+    private static final int PAIRS = 1024;
+
+    private GameObject[] first, second;
+
+    @Setup
+    public void setUp() {
+        World world = BenchmarkWorlds.create(PAIRS + 1, 42);
+        first = new GameObject[PAIRS];
+        second = new GameObject[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            first[i] = world.get(i);
+            second[i] = world.get(i + 1);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public int intersect() {
+        int hits = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            if (first[i].intersect(second[i]))
+                hits++;
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,67 @@
+package asteroid;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of drawing the SpaceShip and of painting a whole frame
+ * of Space into an offscreen image.
+ *
+ * @author Daniel Ge
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+    @Param({"10", "100", "1000"})
+    public int entities;
+
+    private BufferedImage image;
+    private Graphics2D g;
+    private SpaceShip ship;
+    private Space space;
+
+    @Setup
+    public void setUp() {
+        image = new BufferedImage(BenchmarkWorlds.WIDTH,
+                BenchmarkWorlds.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        g = image.createGraphics();
+
+        World world = BenchmarkWorlds.create(entities, 42);
+        ship = world.getSpaceShip();
+        space = new Space();
+        space.setSize(BenchmarkWorlds.WIDTH, BenchmarkWorlds.HEIGHT);
+        space.setWorld(world);
+    }
+
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public void drawSpaceShip() {
+        ship.draw(g);
+    }
+
+    @Benchmark
+    public void paintComponent() {
+        space.paintComponent(g);
+    }
+}
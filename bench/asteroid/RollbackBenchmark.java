@@ -0,0 +1,59 @@
+package asteroid;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the worst frame of a RollbackSession: the input of the other
+ * player arrives for the oldest tick it is missing, MAX_ROLLBACK ticks back,
+ * and differs from the prediction. The World is restored from that tick,
+ * simulated again up to the present (saving every tick), and stepped once
+ * more. To keep up, this has to fit in one frame of World.INTERVAL (25) ms.
+ *
+ * @author Daniel Ge
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RollbackBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int entities;
+
+    private RollbackSession session;
+    private long late;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        session = new RollbackSession(BenchmarkWorlds.create(entities, 42, 2),
+                0);
+        // Run ahead of the other player as far as the session allows
+        while (session.canAdvance())
+            session.advance(World.INPUT_LEFT | World.INPUT_UP);
+        late = 0;
+    }
+
+    @Benchmark
+    public World rollback() {
+        // Flip between two inputs, so that each one differs from the last,
+        // which is what the session predicted.
+        int input = (late & 1) == 0 ? World.INPUT_RIGHT | World.INPUT_FIRE :
+                World.INPUT_LEFT;
+        session.addInput(1, late++, input);
+        session.advance(World.INPUT_LEFT | World.INPUT_UP);
+        return session.getWorld();
+    }
+}
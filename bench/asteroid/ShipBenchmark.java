@@ -0,0 +1,82 @@
+package asteroid;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures ticks in which every SpaceShip turns, thrusts and fires, in a
+ * World with few Asteroids so that the SpaceShips make up most of the work.
+ * Such a game does not last long, so a new one is started whenever it ends.
+ *
+ * turnThrustFire() is the work of one SpaceShip in such a tick on its own:
+ * turn, thrust and fire a Bullet (which goes straight back to the pool,
+ * and whose timer is cleared away by advancing the timers of the World).
+ * Neither benchmark depends on how the SpaceShip does its math, so they can
+ * be run against older versions to compare.
+ *
+ * @author Daniel Ge
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ShipBenchmark {
+    private static final int ASTEROIDS = 10;
+
+    @Param({"1", "4"})
+    public int players;
+
+    private World world;
+    private int[] inputs;
+    private int tick;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        world = BenchmarkWorlds.create(ASTEROIDS, 42, players);
+        inputs = new int[players];
+        tick = 0;
+    }
+
+    @Benchmark
+    public World step() {
+        // Ticks after the game is over do nothing, so start a new one
+        if (world.isGameOver())
+            world = BenchmarkWorlds.create(ASTEROIDS, tick, players);
+        int input = World.INPUT_LEFT | World.INPUT_UP;
+        // Tap the fire key every other tick
+        if ((tick++ & 1) == 0)
+            input |= World.INPUT_FIRE;
+        for (int p = 0; p < players; p++)
+            inputs[p] = input;
+        world.step(inputs);
+        return world;
+    }
+
+    @Benchmark
+    public SpaceShip turnThrustFire() {
+        SpaceShip ship = world.getSpaceShip(0);
+        // Stay below the top speed, above which thrust does nothing
+        ship.setVelocity(0, 0);
+        ship.rotate(1);
+        ship.accelerate();
+        Bullet b = ship.fire();
+        b.destroy();
+        world.bulletPool.release(b);
+        // Let the timer wheel free the timer of the Bullet
+        world.timers.advance();
+        return ship;
+    }
+}
@@ -0,0 +1,98 @@
+package asteroid;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures SnapshotCodec on a World of Asteroids: the time to encode and to
+ * decode one frame against the baseline of the tick before, which is the
+ * usual case for a receiver that acknowledges every frame. Divide the scores
+ * by {@code entities} for the time per GameObject.
+ *
+ * The size of the frames is printed once per trial, as the average bytes
+ * per tick over a run of ticks, next to the size of the whole WorldSnapshot.
+ *
+ * @author Daniel Ge
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SnapshotCodecBenchmark {
+    // Ticks played to measure the bytes per tick
+    private static final int TICKS = 300;
+
+    @Param({"100", "10000"})
+    public int entities;
+
+    private final WorldSnapshot snapshot = new WorldSnapshot();
+    private final WorldSnapshot decoded = new WorldSnapshot();
+    private SnapshotCodec.Encoder encoder;
+    private SnapshotCodec.Decoder decoder;
+    private ByteBuffer frame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        World world = BenchmarkWorlds.create(entities, 42);
+        encoder = new SnapshotCodec.Encoder();
+        decoder = new SnapshotCodec.Decoder();
+
+        long bytes = 0, whole = 0;
+        for (int t = 0; t < TICKS; t++) {
+            world.step(World.INPUT_LEFT | World.INPUT_UP);
+            world.saveState(snapshot);
+            encodeFrame();
+            bytes += frame.remaining();
+            whole += snapshot.byteSize();
+            // The receiver gets the frame and acknowledges it right away
+            encoder.ack(decoder.decode(frame, decoded));
+        }
+        System.out.printf("%n%d entities: %.0f bytes per tick, %.0f bytes " +
+                "per WorldSnapshot%n", entities, (double) bytes / TICKS,
+                (double) whole / TICKS);
+
+        // The frame measured: one more tick, against the tick before
+        world.step(World.INPUT_LEFT | World.INPUT_UP);
+        world.saveState(snapshot);
+        encodeFrame();
+    }
+
+    private void encodeFrame() {
+        int max = SnapshotCodec.maxBytes(snapshot);
+        if (frame == null || frame.capacity() < max)
+            frame = ByteBuffer.allocate(max);
+        frame.clear();
+        encoder.encode(snapshot, frame);
+        frame.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        // Encoding the same tick again replaces it, against the same baseline
+        frame.clear();
+        encoder.encode(snapshot, frame);
+        frame.flip();
+        return frame;
+    }
+
+    @Benchmark
+    public WorldSnapshot decode() {
+        frame.rewind();
+        decoder.decode(frame, decoded);
+        return decoded;
+    }
+}
@@ -0,0 +1,60 @@
+package asteroid;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of a single World.step() (what Space.globalUpdate used to
+ * do every frame) as the number of GameObjects grows. The SpaceShip keeps
+ * turning, thrusting and firing so that the Bullet collision path is
+ * exercised as well. With {@code parallel}, the World runs its collision and
+ * movement passes on the common ForkJoinPool.
+ *
+ * @author Daniel Ge
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TickBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int entities;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private World world;
+    private int tick;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        world = BenchmarkWorlds.create(entities, 42);
+        if (parallel)
+            world.setForkJoinPool(ForkJoinPool.commonPool());
+        tick = 0;
+    }
+
+    @Benchmark
+    public World step() {
+        int input = World.INPUT_LEFT | World.INPUT_UP;
+        // Tap the fire key every other tick
+        if ((tick++ & 1) == 0)
+            input |= World.INPUT_FIRE;
+        world.step(input);
+        return world;
+    }
+}
@@ -0,0 +1,93 @@
+package asteroid;
+
+/**
+ * AimingBot turns towards the nearest Asteroid and shoots at it once it is
+ * facing it, and jumps into hyperspace when an Asteroid gets too close. It
+ * never thrusts. It is the default Bot of the BatchRunner.
+ *
+ * @author Daniel Ge
+ */
+public class AimingBot implements Bot {
+    // Jump into hyperspace when the center of an Asteroid is this close
+    private static final int DANGER_DISTANCE = 40;
+
+    // Shoot when facing this close to the target, in radians
+    private static final double AIM_TOLERANCE = Math.PI / 45;
+
+    // The player this Bot plays
+    private final int player;
+
+    private boolean fired;
+
+    /**
+     * Creates a new AimingBot for the first player.
+     */
+    public AimingBot() {
+        this(0);
+    }
+
+    /**
+     * Creates a new AimingBot.
+     *
+     * @param player    The player whose SpaceShip to fly
+     */
+    public AimingBot(int player) {
+        this.player = player;
+    }
+
+    public int nextInput(World world) {
+        SpaceShip ship = world.getSpaceShip(player);
+        if (ship.isDestroyed() || ship.inHyperspace())
+            return 0;
+
+        int width = world.getWidth(), height = world.getHeight();
+        int targetX = 0, targetY = 0;
+        long nearest = Long.MAX_VALUE;
+        for (int i = 0; i < world.size(); i++) {
+            GameObject o = world.get(i);
+            if (!(o instanceof Asteroid) || o.isDestroyed())
+                continue;
+
+            // The shortest way there may be across an edge
+            int dx = wrap(o.getX() - ship.getX(), width);
+            int dy = wrap(o.getY() - ship.getY(), height);
+            long distance = (long) dx * dx + (long) dy * dy;
+            if (distance < nearest) {
+                nearest = distance;
+                targetX = dx;
+                targetY = dy;
+            }
+        }
+
+        if (nearest == Long.MAX_VALUE)
+            return 0;
+        if (nearest < DANGER_DISTANCE * DANGER_DISTANCE)
+            return World.INPUT_HYPERSPACE;
+
+        // A SpaceShip (and its Bullets) facing theta moves along
+        // (-sin(theta), cos(theta)).
+        double wanted = StrictMath.atan2(-targetX, targetY);
+        double error = Math.IEEEremainder(wanted - ship.getTheta(), 2 * Math.PI);
+
+        int input = 0;
+        if (Math.abs(error) > AIM_TOLERANCE)
+            input |= error < 0 ? World.INPUT_LEFT : World.INPUT_RIGHT;
+        // Fire only fires when the key goes down, so let go every other tick.
+        else if (!fired)
+            input |= World.INPUT_FIRE;
+        fired = (input & World.INPUT_FIRE) != 0;
+        return input;
+    }
+
+    /**
+     * Returns the shortest signed distance equivalent to d on a wrapping
+     * axis of the given size.
+     */
+    private static int wrap(int d, int size) {
+        if (d > size / 2)
+            return d - size;
+        if (d < -size / 2)
+            return d + size;
+        return d;
+    }
+}
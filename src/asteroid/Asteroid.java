@@ -4,8 +4,8 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Shape;
 import java.awt.geom.Rectangle2D;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -22,71 +22,131 @@ public class Asteroid extends HostileObject {
      * Private constructor for the Asteroid. Can only be invoked using the
      * static methods.
      * 
+     * @param world     The World this Asteroid lives in
      * @param x         X-coordinate
      * @param y         Y-coordinate
      * @param width     Width of this Asteroid
      * @param height    Height of this Asteroid
-     * @param velocityX X-velocity of this Asteroid
-     * @param velocityY Y-velocity of this Asteroid
-     * @param theta     Orientation of this Asteroid in radians. Used by the
-     *                  static methods to determine the velocity vector.
+     * @param velocityX X-velocity of this Asteroid in fixed point
+     * @param velocityY Y-velocity of this Asteroid in fixed point
      */
-    private Asteroid(int x, int y, int width, int height, double velocityX,
-            double velocityY, double theta) {
-        super(x, y, width, height, velocityX, velocityY, 0.0);
+    private Asteroid(World world, int x, int y, int width, int height,
+            int velocityX, int velocityY) {
+        super(world, x, y, width, height, 0.0, 0.0, 0.0);
+        setFixedVelocity(velocityX, velocityY);
     }
 
     /**
      * Creates a big Asteroid of size 57x57 pixels at the specified coordinates
      * and orientation. Velocity angle is determined by the angle.
      * 
+     * @param world The World the Asteroid lives in
      * @param x     X-coordinate
      * @param y     Y-coordinate
      * @param angle Direction of the Asteroid.
      * @return      A big Asteroid.
      */
     public static Asteroid createBigAsteroid
-            (int x, int y, double angle) {
-        
-        return new Asteroid(x, y, BIG_SIZE, BIG_SIZE, 
-                BIG_VELOCITY * Math.sin(angle) + 0.5,
-                BIG_VELOCITY * Math.cos(angle) + 0.5, angle);
+            (World world, int x, int y, double angle) {
+        return big(world, x, y, Fixed.angleIndex(angle));
+    }
+
+    /**
+     * Creates a big Asteroid of size 57x57 pixels at the specified coordinates,
+     * moving in a random direction.
+     *
+     * @param world The World the Asteroid lives in
+     * @param x     X-coordinate
+     * @param y     Y-coordinate
+     * @return      A big Asteroid.
+     */
+    public static Asteroid createBigAsteroid(World world, int x, int y) {
+        return big(world, x, y, generateAngleIndex(world.random));
     }
 
     /**
      * Creates a medium Asteroid of size 29x29 pixels at the specified 
      * coordinates and orientation. Velocity angle is determined by the angle.
      * 
+     * @param world The World the Asteroid lives in
      * @param x     X-coordinate
      * @param y     Y-coordinate
      * @param angle Direction of the Asteroid.
      * @return      A medium Asteroid.
      */
     public static Asteroid createMediumAsteroid
-            (int x, int y, double angle) {
+            (World world, int x, int y, double angle) {
+        return piece(world, x, y, MED_SIZE, MED_VELOCITY,
+                Fixed.angleIndex(angle));
+    }
 
-        double velocity = (Math.random() * (MED_VELOCITY - 1.0)) + 1.0;
-        return new Asteroid(x, y, MED_SIZE, MED_SIZE,
-                velocity * Math.sin(angle),
-                velocity * Math.cos(angle), angle);
+    /**
+     * Creates a medium Asteroid of size 29x29 pixels at the specified
+     * coordinates, moving in a random direction.
+     *
+     * @param world The World the Asteroid lives in
+     * @param x     X-coordinate
+     * @param y     Y-coordinate
+     * @return      A medium Asteroid.
+     */
+    public static Asteroid createMediumAsteroid(World world, int x, int y) {
+        return piece(world, x, y, MED_SIZE, MED_VELOCITY,
+                generateAngleIndex(world.random));
     }
 
     /**
      * Creates a small Asteroid of size 15x15 pixels at the specified 
      * coordinates and orientation. Velocity angle is determined by the angle.
      * 
+     * @param world The World the Asteroid lives in
      * @param x     X-coordinate
      * @param y     Y-coordinate
      * @param angle Direction of the Asteroid.
      * @return      A small Asteroid.
      */
     public static Asteroid createSmallAsteroid
-            (int x, int y, double angle) {
+            (World world, int x, int y, double angle) {
+        return piece(world, x, y, SMALL_SIZE, SMALL_VELOCITY,
+                Fixed.angleIndex(angle));
+    }
 
-        double velocity = (Math.random() * (SMALL_VELOCITY - 1.0)) + 1.0;
-        return new Asteroid(x, y, SMALL_SIZE, SMALL_SIZE,
-                velocity * Math.sin(angle),
-                velocity * Math.cos(angle), angle);
+    /**
+     * Creates a small Asteroid of size 15x15 pixels at the specified
+     * coordinates, moving in a random direction.
+     *
+     * @param world The World the Asteroid lives in
+     * @param x     X-coordinate
+     * @param y     Y-coordinate
+     * @return      A small Asteroid.
+     */
+    public static Asteroid createSmallAsteroid(World world, int x, int y) {
+        return piece(world, x, y, SMALL_SIZE, SMALL_VELOCITY,
+                generateAngleIndex(world.random));
+    }
+
+    /**
+     * Creates a big Asteroid moving along a step of the sine table (see
+     * Fixed).
+     */
+    private static Asteroid big(World world, int x, int y, int angle) {
+        final int SPEED = Fixed.fromDouble(BIG_VELOCITY);
+        final int HALF = Fixed.ONE / 2;
+        return new Asteroid(world, x, y, BIG_SIZE, BIG_SIZE,
+                Fixed.mul(SPEED, Fixed.sin(angle)) + HALF,
+                Fixed.mul(SPEED, Fixed.cos(angle)) + HALF);
+    }
+
+    /**
+     * Creates a piece of a broken Asteroid moving along a step of the sine
+     * table, at a random speed from 1.0 up to maxVelocity.
+     */
+    private static Asteroid piece(World world, int x, int y, int size,
+            double maxVelocity, int angle) {
+        int speed = Fixed.fromDouble(
+                (world.random.nextDouble() * (maxVelocity - 1.0)) + 1.0);
+        return new Asteroid(world, x, y, size, size,
+                Fixed.mul(speed, Fixed.sin(angle)),
+                Fixed.mul(speed, Fixed.cos(angle)));
     }
 
     /**
@@ -97,22 +157,23 @@ public class Asteroid extends HostileObject {
      *          this is a small Asteroid, return {@code null}
      * @throws IllegalStateException    if this Asteroid is not destroyed yet
      */
-    public Set<Asteroid> breakAsteroid() {
+    public List<Asteroid> breakAsteroid() {
         if (!isDestroyed())
             throw new IllegalStateException("Asteroid must be destroyed first");
 
-        Set<Asteroid> aList = new HashSet<Asteroid>(2);
+        List<Asteroid> aList = new ArrayList<Asteroid>(2);
+        int x = getX(), y = getY();
         // Create two medium Asteroids upon destruction of a big one
         if (WIDTH == BIG_SIZE) {
-            aList.add(Asteroid.createMediumAsteroid(x, y, GameObject.generateAngle()));
-            aList.add(Asteroid.createMediumAsteroid(x, y, GameObject.generateAngle()));
+            aList.add(Asteroid.createMediumAsteroid(world, x, y));
+            aList.add(Asteroid.createMediumAsteroid(world, x, y));
             return aList;
         }
 
         // Create two small Asteroids upon destruction of a medium one
         if (WIDTH == MED_SIZE) {
-            aList.add(Asteroid.createSmallAsteroid(x, y, generateAngle()));
-            aList.add(Asteroid.createSmallAsteroid(x, y, generateAngle()));
+            aList.add(Asteroid.createSmallAsteroid(world, x, y));
+            aList.add(Asteroid.createSmallAsteroid(world, x, y));
             return aList;
         }
 
@@ -120,6 +181,28 @@ public class Asteroid extends HostileObject {
         return null;
     }
 
+    /**
+     * Creates an Asteroid of the given size to restore a WorldSnapshot. Its
+     * position is restored by the EntityStore.
+     */
+    static Asteroid restore(World world, int width, int height) {
+        return new Asteroid(world, 0, 0, width, height, 0, 0);
+    }
+
+    @Override
+    byte kind() {
+        return EntityStore.ASTEROID;
+    }
+
+    @Override
+    int debris() {
+        switch (getSize()) {
+            case BIG_SIZE: return 48;
+            case MED_SIZE: return 32;
+            default: return 20;
+        }
+    }
+
     /**
      * Returns the score that would be gained for destroying this object.
      *
@@ -157,17 +240,21 @@ public class Asteroid extends HostileObject {
      */
     @Override
     public Shape boundingShape() {
+        int x = getX(), y = getY();
         return new Rectangle2D.Float (x-WIDTH/2, y-WIDTH/2, WIDTH, WIDTH);
     }
 
     /**
      * Draw the object to the screen.
      *
-     * @param g The Graphics context.
+     * @param g     The Graphics context.
+     * @param alpha How far between the previous tick and the current tick to
+     *              draw
      */
     @Override
-    public void draw(Graphics g) {
+    public void draw(Graphics g, float alpha) {
         if (!isDestroyed()) {
+            int x = getRenderX(alpha), y = getRenderY(alpha);
             g.setColor(Color.WHITE);
             g.drawRect(x-WIDTH/2, y-WIDTH/2, WIDTH, WIDTH);
         }
@@ -0,0 +1,291 @@
+package asteroid;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BatchRunner plays many games headless, each with its own seed and Bot, on
+ * all cores, and reports the distribution of the scores, the levels reached
+ * and how long the SpaceShip survived. It is meant for balancing the game,
+ * e.g. the speeds and scores of Asteroids, so it only uses World and never
+ * touches AWT.
+ *
+ * Every game is seeded from the seed of the batch and its number, so a batch
+ * run with the same options always gives the same report, whatever the number
+ * of threads.
+ *
+ * @author Daniel Ge
+ */
+public final class BatchRunner {
+    private static final int WIDTH = 640, HEIGHT = 480;
+
+    private final int games;
+    private final long[] seeds;
+    private final Class<? extends Bot> bot;
+    private final int maxTicks;
+
+    // Results of each game
+    private final int[] scores, levels, survived;
+    private final boolean[] alive;
+
+    // Next game to be played by a worker
+    private final AtomicInteger nextGame = new AtomicInteger();
+
+    /**
+     * Creates a new BatchRunner.
+     *
+     * @param games     Number of games to play
+     * @param seed      Seed of the batch
+     * @param bot       The Bot to play every game with
+     * @param maxTicks  Games that are not over after this many ticks are
+     *                  stopped
+     */
+    public BatchRunner(int games, long seed, Class<? extends Bot> bot,
+            int maxTicks) {
+        this.games = games;
+        this.bot = bot;
+        this.maxTicks = maxTicks;
+        this.scores = new int[games];
+        this.levels = new int[games];
+        this.survived = new int[games];
+        this.alive = new boolean[games];
+
+        WorldRandom random = new WorldRandom(seed);
+        seeds = new long[games];
+        for (int g = 0; g < games; g++)
+            seeds[g] = random.nextLong();
+    }
+
+    /**
+     * Play every game, using the given number of threads.
+     *
+     * @param threads   Number of threads
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public void run(int threads) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        final RuntimeException[] failure = new RuntimeException[1];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        int g;
+                        while ((g = nextGame.getAndIncrement()) < games)
+                            play(g);
+                    } catch (RuntimeException e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                        nextGame.set(games);
+                    }
+                }
+            }, "BatchRunner-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        if (failure[0] != null)
+            throw failure[0];
+    }
+
+    /**
+     * Play game number g until it is over or runs out of time.
+     */
+    private void play(int g) {
+        Bot player;
+        try {
+            player = bot.getConstructor().newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot create " +
+                    bot.getName() + ": " + e, e);
+        }
+
+        World world = new World(WIDTH, HEIGHT, seeds[g]);
+        SpaceShip ship = world.getSpaceShip();
+        int destroyedAt = -1;
+        for (int t = 0; t < maxTicks && !world.isGameOver(); t++) {
+            world.step(player.nextInput(world));
+            if (destroyedAt < 0 && ship.isDestroyed())
+                destroyedAt = t + 1;
+        }
+
+        scores[g] = ship.getScore();
+        levels[g] = world.getLevel();
+        survived[g] = destroyedAt < 0 ? (int) world.getTick() : destroyedAt;
+        alive[g] = destroyedAt < 0;
+    }
+
+    /**
+     * Print the distribution of the results.
+     *
+     * @param millis    How long the games took to play, in milliseconds
+     */
+    public void report(long millis) {
+        // Not survived[g] == maxTicks, which a SpaceShip destroyed on the
+        // last tick also has
+        int stillAlive = 0;
+        for (int g = 0; g < games; g++) {
+            if (alive[g])
+                stillAlive++;
+        }
+
+        System.out.printf("%d games with %s in %.2f s (%.1f games/s)%n",
+                games, bot.getSimpleName(), millis / 1000.0,
+                games * 1000.0 / Math.max(millis, 1));
+
+        System.out.println();
+        System.out.println("Score");
+        printDistribution(scores);
+        printHistogram(scores);
+
+        System.out.println();
+        System.out.println("Level reached");
+        int maxLevel = 0;
+        for (int level : levels)
+            maxLevel = Math.max(maxLevel, level);
+        int[] counts = new int[maxLevel + 1];
+        for (int level : levels)
+            counts[level]++;
+        for (int level = 1; level <= maxLevel; level++) {
+            if (counts[level] > 0)
+                System.out.printf("  %3d  %8d  %5.1f%%%n", level, counts[level],
+                        100.0 * counts[level] / games);
+        }
+
+        System.out.println();
+        System.out.println("Survival time (s)");
+        double[] seconds = new double[games];
+        for (int g = 0; g < games; g++)
+            seconds[g] = survived[g] * World.INTERVAL / 1000.0;
+        printDistribution(seconds);
+        System.out.printf("  still alive after %.0f s: %d (%.1f%%)%n",
+                maxTicks * World.INTERVAL / 1000.0, stillAlive,
+                100.0 * stillAlive / games);
+    }
+
+    private static void printDistribution(int[] values) {
+        double[] d = new double[values.length];
+        for (int i = 0; i < values.length; i++)
+            d[i] = values[i];
+        printDistribution(d);
+    }
+
+    /**
+     * Print the mean, standard deviation and percentiles of the values.
+     */
+    private static void printDistribution(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double sum = 0, squares = 0;
+        for (double v : sorted) {
+            sum += v;
+            squares += v * v;
+        }
+        int n = sorted.length;
+        double mean = sum / n;
+        double deviation = Math.sqrt(Math.max(squares / n - mean * mean, 0));
+
+        System.out.printf("  mean %.1f  stddev %.1f%n", mean, deviation);
+        System.out.printf("  min %.1f  p10 %.1f  p50 %.1f  p90 %.1f  " +
+                "p99 %.1f  max %.1f%n", sorted[0], percentile(sorted, 10),
+                percentile(sorted, 50), percentile(sorted, 90),
+                percentile(sorted, 99), sorted[n - 1]);
+    }
+
+    private static double percentile(double[] sorted, int p) {
+        int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(i, sorted.length - 1))];
+    }
+
+    /**
+     * Print a histogram of the values in ten buckets.
+     */
+    private static void printHistogram(int[] values) {
+        final int BUCKETS = 10, BAR = 40;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int v : values) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        int size = Math.max(1, (max - min + BUCKETS) / BUCKETS);
+        int[] counts = new int[BUCKETS];
+        int most = 0;
+        for (int v : values) {
+            int b = Math.min((v - min) / size, BUCKETS - 1);
+            most = Math.max(most, ++counts[b]);
+        }
+
+        for (int b = 0; b < BUCKETS; b++) {
+            StringBuilder bar = new StringBuilder();
+            for (int i = 0; i < (long) counts[b] * BAR / most; i++)
+                bar.append('#');
+            System.out.printf("  %7d..%-7d %8d %s%n", min + b * size,
+                    min + (b + 1) * size - 1, counts[b], bar);
+        }
+    }
+
+    /**
+     * Runs a batch of games. Options:
+     *
+     * <pre>
+     *   -games N       number of games (default 1000)
+     *   -seed S        seed of the batch (default 1)
+     *   -threads T     number of threads (default: number of cores)
+     *   -bot CLASS     the Bot to play with (default asteroid.AimingBot)
+     *   -minutes M     stop games after M minutes of play (default 10)
+     * </pre>
+     *
+     * @param args  The options
+     */
+    public static void main(String[] args) throws Exception {
+        int games = 1000;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String botName = AimingBot.class.getName();
+        int minutes = 10;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 == args.length)
+                    throw new IllegalArgumentException(option + " needs a value");
+                String value = args[++i];
+                if (option.equals("-games"))
+                    games = Integer.parseInt(value);
+                else if (option.equals("-seed"))
+                    seed = Long.parseLong(value);
+                else if (option.equals("-threads"))
+                    threads = Integer.parseInt(value);
+                else if (option.equals("-bot"))
+                    botName = value;
+                else if (option.equals("-minutes"))
+                    minutes = Integer.parseInt(value);
+                else
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+            if (games <= 0 || threads <= 0 || minutes <= 0)
+                throw new IllegalArgumentException(
+                        "-games, -threads and -minutes must be positive");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java asteroid.BatchRunner [-games N] " +
+                    "[-seed S] [-threads T] [-bot CLASS] [-minutes M]");
+            System.exit(2);
+        }
+
+        Class<? extends Bot> bot;
+        try {
+            bot = Class.forName(botName).asSubclass(Bot.class);
+        } catch (Exception e) {
+            System.err.println(botName + " is not a Bot: " + e);
+            System.exit(2);
+            return;
+        }
+
+        int maxTicks = minutes * 60 * 1000 / World.INTERVAL;
+        BatchRunner runner = new BatchRunner(games, seed, bot, maxTicks);
+        long start = System.nanoTime();
+        runner.run(threads);
+        runner.report((System.nanoTime() - start) / 1000000);
+    }
+}
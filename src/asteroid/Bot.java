@@ -0,0 +1,22 @@
+package asteroid;
+
+/**
+ * A Bot plays a game of Asteroids in place of a player, e.g. in the
+ * BatchRunner. Every game gets its own Bot, so a Bot may keep state from one
+ * tick to the next. Bots used by the BatchRunner need a public no-argument
+ * constructor.
+ *
+ * @author Daniel Ge
+ * @see BatchRunner
+ */
+public interface Bot {
+    /**
+     * Decide which keys to hold down during the next tick.
+     *
+     * @param world The World, as it is before the tick. It must not be
+     *              changed.
+     * @return      The input for World.step(), as a combination of the
+     *              {@code World.INPUT_} bits
+     */
+    int nextInput(World world);
+}
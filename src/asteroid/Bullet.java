@@ -3,101 +3,194 @@ package asteroid;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Shape;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.geom.Rectangle2D;
-import javax.swing.Timer;
 
 /**
  * Represents a Bullet.
  *
  * @author Daniel Ge
  */
-public class Bullet extends GameObject {
+public class Bullet extends GameObject implements TimerWheel.Timeout {
     private static final int SIZE = 3;
     private static final double VELOCITY = 10;
 
-    private static int maxBullets = 4;
-    private static int numBullets = 0;
-    private Timer timer;
+    // The velocity of a Bullet fired along each SpaceShip heading
+    private static final int[] HEADING_VX = new int[SpaceShip.HEADINGS],
+                               HEADING_VY = new int[SpaceShip.HEADINGS];
 
-    private boolean isOwn;
+    static {
+        int speed = Fixed.fromDouble(VELOCITY);
+        for (int h = 0; h < SpaceShip.HEADINGS; h++) {
+            HEADING_VX[h] = -Fixed.mul(speed, SpaceShip.headingSin(h));
+            HEADING_VY[h] = Fixed.mul(speed, SpaceShip.headingCos(h));
+        }
+    }
+
+    // Bullets are destroyed after this many ticks (700 ms)
+    private static final int LIFETIME = 700 / World.INTERVAL;
+
+    // Destroys the Bullet once its lifetime runs out
+    private int timer = TimerWheel.NONE;
+    // The SpaceShip that fired this Bullet, or null for a HostileObject
+    private SpaceShip owner;
     
     /**
-     * Creates a new Bullet. This constructor can only be invoked using the
-     * static methods.
+     * Creates a new, destroyed Bullet for the BulletPool of a World. It is
+     * brought to life by the static methods.
+     * 
+     * @param world The World this Bullet lives in
+     */
+    Bullet (World world) {
+        super(world, 0, 0, SIZE, SIZE, 0.0, 0.0, 0.0);
+        destroy();
+    }
+
+    /**
+     * Take a Bullet from the pool of the World and fire it.
      * 
+     * @param world The World the Bullet lives in
      * @param x     X-coordinate
      * @param y     Y-coordinate
      * @param theta Direction of the Bullet in radians
-     * @param isOwn {@code true} if this Bullet was fired by a SpaceShip, 
-     *              {@code false} if it was fired by a HostileObject
+     * @param owner The SpaceShip firing this Bullet, or {@code null} if it was
+     *              fired by a HostileObject
+     * @return      The Bullet
      */
-    private Bullet (int x, int y, double theta, boolean isOwn) {
-        super(x, y, SIZE, SIZE, -1 * VELOCITY * Math.sin(theta),
-                VELOCITY * Math.cos(theta), theta);
-        this.isOwn = isOwn;
+    private static Bullet launch (World world, int x, int y, double theta,
+            SpaceShip owner) {
+        int speed = Fixed.fromDouble(VELOCITY);
+        return launch(world, x, y, -Fixed.mul(speed, Fixed.sin(theta)),
+                Fixed.mul(speed, Fixed.cos(theta)), theta, owner);
+    }
 
-        // Call destroy after the bullet has been active for 700 ms
-        timer = new Timer(700, new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                destroy();
-            }
-        });
+    /**
+     * Take a Bullet from the pool of the World and fire it at a velocity in
+     * fixed point.
+     */
+    private static Bullet launch (World world, int x, int y, int velocityX,
+            int velocityY, double theta, SpaceShip owner) {
+        Bullet b = world.bulletPool.acquire();
+        b.respawn(Fixed.fromInt(x), Fixed.fromInt(y), velocityX, velocityY,
+                theta);
+        b.owner = owner;
+        b.timer = world.timers.schedule(b, LIFETIME, TimerWheel.BULLET);
 
-        numBullets++;
-        timer.start();
+        if (owner != null)
+            owner.bullets++;
+        return b;
     }
 
     /**
-     * Create a Bullet (fired by a SpaceShip) at the specified coordinates
-     * and direction. If the number of friendly bullets on the screen is equal
-     * to the maximum number of bullets, this method returns {@code null}
+     * Create a Bullet fired by a SpaceShip at the specified coordinates and
+     * direction. If the number of Bullets fired by the SpaceShip that are on
+     * the screen is equal to the maximum number of bullets, this method
+     * returns {@code null}. Bullets are taken from the pool of the World
+     * rather than allocated.
      * 
+     * @param ship  The SpaceShip firing the Bullet
      * @param x     X-coordinate
      * @param y     Y-coordinate
      * @param theta Direction of the Bullet in radians
      * @return      A Bullet moving in the direction of {@code theta} at 
-     *              {@code (x,y)}, or {@code null} if the number of friendly
-     *              bullets already on the screen is at least the maximum number
-     *              of friendly Bullets.
+     *              {@code (x,y)}, or {@code null} if the number of Bullets of
+     *              the SpaceShip already on the screen is at least the maximum
+     *              number of friendly Bullets.
      */
-    public static Bullet createFriendlyBullet (int x, int y, double theta) {
-        if (numBullets >= maxBullets)
+    public static Bullet createFriendlyBullet (SpaceShip ship, int x, int y,
+            double theta) {
+        World world = ship.world;
+        if (ship.bullets >= world.getMaxBullets())
             return null;
-        return new Bullet (x, y, theta, true);
+        return launch(world, x, y, theta, ship);
+    }
+
+    /**
+     * Create a Bullet fired by a SpaceShip along one of its headings, like
+     * {@link #createFriendlyBullet} but with the velocity looked up rather
+     * than computed.
+     *
+     * @param ship      The SpaceShip firing the Bullet
+     * @param x         X-coordinate
+     * @param y         Y-coordinate
+     * @param heading   The heading of the SpaceShip
+     * @return          The Bullet, or {@code null} if the SpaceShip has too
+     *                  many Bullets on the screen
+     * @see SpaceShip#getHeading
+     */
+    static Bullet createFromHeading (SpaceShip ship, int x, int y,
+            int heading) {
+        World world = ship.world;
+        if (ship.bullets >= world.getMaxBullets())
+            return null;
+        return launch(world, x, y, HEADING_VX[heading], HEADING_VY[heading],
+                SpaceShip.headingAngle(heading), ship);
     }
 
     /**
      * Create a Bullet (fired by a HostileObject) at the specified coordinates
-     * and direction.
+     * and direction. Bullets are taken from the pool of the World rather than
+     * allocated.
      * 
+     * @param world The World the Bullet lives in
      * @param x     X-coordinate
      * @param y     Y-coordinate
      * @param theta Direction of the Bullet in radians
      * @return      A Bullet moving in the direction of {@code theta} at 
      *              {@code (x,y)}
      */
-    public static Bullet createEnemyBullet (int x, int y, double theta) {
-        return new Bullet (x, y, theta, false);
+    public static Bullet createEnemyBullet (World world, int x, int y,
+            double theta) {
+        return launch(world, x, y, theta, null);
     }
 
     /**
-     * Set the maximum number of friendly bullets allowed on the screen.
+     * Determine whether this Bullet was fired by the SpaceShip or HostileObject.
      * 
-     * @param max   The new maximum number.
+     * @return  {@code true} if this is a friendly Bullet, {@code false} if not.
      */
-    public static void setMaxBullets (int max) {
-        maxBullets = max;
+    public boolean isFriendly() {
+        return owner != null;
     }
 
     /**
-     * Determine whether this Bullet was fired by the SpaceShip or HostileObject.
-     * 
-     * @return  {@code true} if this is a friendly Bullet, {@code false} if not.
+     * Returns the SpaceShip that fired this Bullet.
+     *
+     * @return  The SpaceShip, or {@code null} if this Bullet was fired by a
+     *          HostileObject
      */
-    public boolean isFriendly() {
-        return isOwn;
+    public SpaceShip getOwner() {
+        return owner;
+    }
+
+    @Override
+    byte kind() {
+        return EntityStore.BULLET;
+    }
+
+    /**
+     * Returns the number of ticks until this Bullet is destroyed.
+     */
+    int getTicksLeft() {
+        return world.timers.ticksLeft(timer);
+    }
+
+    /**
+     * Set the lifetime and owner of a Bullet taken from the pool to restore
+     * a WorldSnapshot. Its position is restored by the EntityStore, and the
+     * Bullet count of its owner by the SpaceShip.
+     */
+    void restore(int ticksLeft, SpaceShip owner) {
+        this.owner = owner;
+        timer = world.timers.schedule(this, ticksLeft, TimerWheel.BULLET);
+    }
+
+    /**
+     * The lifetime of this Bullet has run out.
+     */
+    public void expire() {
+        timer = TimerWheel.NONE;
+        if (!isDestroyed())
+            destroy();
     }
 
     /**
@@ -119,10 +212,23 @@ public class Bullet extends GameObject {
      */
     @Override
     public void destroy() {
-        if (isFriendly())
-            numBullets--;
-        timer.stop();
         super.destroy();
+        world.timers.cancel(timer);
+        timer = TimerWheel.NONE;
+        if (owner != null)
+            owner.bullets--;
+    }
+
+    /**
+     * Once a destroyed Bullet has been removed from the global list, it goes
+     * back to the pool of its World to be fired again.
+     *
+     * @see GameObject#detach
+     */
+    @Override
+    void detach() {
+        super.detach();
+        world.bulletPool.release(this);
     }
 
     /**
@@ -133,18 +239,22 @@ public class Bullet extends GameObject {
      */
     @Override
     public Shape boundingShape() {
+        int x = getX(), y = getY();
         return new Rectangle2D.Float(x-1, y-1, SIZE, SIZE);
     }
 
     /**
      * Draw the object to the screen.
      *
-     * @param g The Graphics context.
+     * @param g     The Graphics context.
+     * @param alpha How far between the previous tick and the current tick to
+     *              draw
      * @see GameObject#draw
      */
     @Override
-    public void draw(Graphics g) {
+    public void draw(Graphics g, float alpha) {
         if (!isDestroyed()) {
+            int x = getRenderX(alpha), y = getRenderY(alpha);
             g.setColor(Color.WHITE);
             g.fillRect(x-1, y-1, SIZE, SIZE);
         }
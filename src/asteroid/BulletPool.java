@@ -0,0 +1,55 @@
+package asteroid;
+
+/**
+ * BulletPool holds the destroyed Bullets of a World so that they can be fired
+ * again. Once enough Bullets have been created for the busiest moment of the
+ * game, firing a Bullet does not allocate anything.
+ *
+ * @author Daniel Ge
+ */
+final class BulletPool {
+    private final World world;
+    private Bullet[] free;
+    private int size;
+
+    /**
+     * Creates a new BulletPool holding the given number of Bullets.
+     *
+     * @param world         The World the Bullets live in
+     * @param preallocate   Number of Bullets to create up front
+     */
+    BulletPool(World world, int preallocate) {
+        this.world = world;
+        free = new Bullet[Math.max(preallocate, 1)];
+        for (int i = 0; i < preallocate; i++)
+            free[size++] = new Bullet(world);
+    }
+
+    /**
+     * Take a destroyed Bullet out of the pool, creating a new one if the
+     * pool is empty.
+     *
+     * @return  A destroyed Bullet that is not in the global list
+     */
+    Bullet acquire() {
+        if (size == 0)
+            return new Bullet(world);
+        Bullet b = free[--size];
+        free[size] = null;
+        return b;
+    }
+
+    /**
+     * Put a Bullet back into the pool.
+     *
+     * @param b A destroyed Bullet that is not in the global list
+     */
+    void release(Bullet b) {
+        if (size == free.length) {
+            Bullet[] newFree = new Bullet[size * 2];
+            System.arraycopy(free, 0, newFree, 0, size);
+            free = newFree;
+        }
+        free[size++] = b;
+    }
+}
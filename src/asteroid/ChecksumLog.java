@@ -0,0 +1,211 @@
+package asteroid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A ChecksumLog holds the checksum of the World (see World#checksum) at every
+ * tick of a run of ticks. Comparing the logs of two copies of a game, e.g. a
+ * game and a Replay of it, or the two ends of a network game, finds the
+ * first tick at which they went apart.
+ *
+ * The log covers a single run of ticks. A checksum for a tick inside or just
+ * after the run replaces the rest of the run from that tick on (as happens
+ * when a World is restored to an earlier tick and played again); a checksum
+ * for any other tick starts the log over. The file format is, in big-endian
+ * order:
+ *
+ * <pre>
+ *   int     MAGIC ("ASUM")
+ *   byte    VERSION
+ *   long    first tick
+ *   int     number of ticks
+ *   long[]  the checksum of each tick
+ * </pre>
+ *
+ * @author Daniel Ge
+ */
+public final class ChecksumLog {
+    static final int MAGIC = 0x4153554d;
+    static final int VERSION = 1;
+
+    private long first;
+    private long[] sums = new long[256];
+    private int size;
+
+    /**
+     * Returns the file the ChecksumLog of a game is kept in, next to another
+     * file of the game (e.g. its Recording).
+     *
+     * @param file  The other file
+     * @return      The file of the ChecksumLog
+     */
+    public static File fileFor(File file) {
+        return new File(file.getPath() + ".sums");
+    }
+
+    /**
+     * Set the checksum of a tick.
+     *
+     * @param tick  The tick
+     * @param sum   The checksum of the World at that tick
+     */
+    public void add(long tick, long sum) {
+        if (size == 0 || tick < first || tick > first + size) {
+            first = tick;
+            size = 0;
+        }
+        else {
+            size = (int) (tick - first);
+        }
+        if (size == sums.length) {
+            long[] newSums = new long[size * 2];
+            System.arraycopy(sums, 0, newSums, 0, size);
+            sums = newSums;
+        }
+        sums[size++] = sum;
+    }
+
+    /**
+     * Returns the first tick in the log.
+     *
+     * @return  The first tick
+     */
+    public long first() {
+        return first;
+    }
+
+    /**
+     * Returns the tick after the last one in the log.
+     *
+     * @return  The end of the run of ticks
+     */
+    public long end() {
+        return first + size;
+    }
+
+    /**
+     * Determines whether the log has the checksum of a tick.
+     *
+     * @param tick  The tick
+     * @return      {@code true} if the tick is in the log
+     */
+    public boolean contains(long tick) {
+        return tick >= first && tick < first + size;
+    }
+
+    /**
+     * Returns the checksum of a tick.
+     *
+     * @param tick  The tick
+     * @return      The checksum of the World at that tick
+     * @throws IllegalArgumentException if the tick is not in the log
+     */
+    public long get(long tick) {
+        if (!contains(tick))
+            throw new IllegalArgumentException("No checksum of tick " + tick);
+        return sums[(int) (tick - first)];
+    }
+
+    /**
+     * Returns the first tick in both logs whose checksums differ.
+     *
+     * @param other The other log
+     * @return      The tick, or -1 if the logs agree on every tick in both
+     */
+    public long firstDivergence(ChecksumLog other) {
+        long from = Math.max(first, other.first);
+        long to = Math.min(end(), other.end());
+        for (long t = from; t < to; t++) {
+            if (get(t) != other.get(t))
+                return t;
+        }
+        return -1;
+    }
+
+    /**
+     * Write the log to a stream.
+     *
+     * @param out   The stream to write to. It is not closed.
+     * @throws IOException  if the log cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeLong(first);
+        data.writeInt(size);
+        for (int i = 0; i < size; i++)
+            data.writeLong(sums[i]);
+        data.flush();
+    }
+
+    /**
+     * Write the log to a file.
+     *
+     * @param file  The file to write to. It is replaced if it exists.
+     * @throws IOException  if the log cannot be written
+     */
+    public void write(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read a log from a stream.
+     *
+     * @param in    The stream to read from. It is not closed.
+     * @return      The log
+     * @throws IOException  if the stream cannot be read or does not hold a
+     *                      ChecksumLog
+     */
+    public static ChecksumLog read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(
+                new BufferedInputStream(in));
+        if (data.readInt() != MAGIC)
+            throw new IOException("Not a checksum log");
+        int version = data.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported checksum log version " +
+                    version);
+
+        ChecksumLog log = new ChecksumLog();
+        long first = data.readLong();
+        int size = data.readInt();
+        if (first < 0 || size < 0)
+            throw new IOException("Corrupt checksum log");
+        for (int i = 0; i < size; i++)
+            log.add(first + i, data.readLong());
+        return log;
+    }
+
+    /**
+     * Read a log from a file.
+     *
+     * @param file  The file to read
+     * @return      The log
+     * @throws IOException  if the file cannot be read or does not hold a
+     *                      ChecksumLog
+     */
+    public static ChecksumLog read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package asteroid;
+
+/**
+ * EntityStore holds the state of every GameObject currently in Space in
+ * parallel primitive arrays, so that the per-frame passes (movement and
+ * collision detection) can run as tight loops over contiguous memory.
+ *
+ * Entities occupy the slots {@code [0, size)}. Removing an entity moves the
+ * last entity into its slot, so slot numbers are only stable between calls to
+ * {@link #removeDestroyed}. The GameObject in {@code views[i]} is a thin view
+ * over slot {@code i}. The position of every entity before its last move is
+ * kept as well, so that frames can be drawn in between two ticks.
+ *
+ * Positions, velocities and drag are 16.16 fixed-point numbers (see Fixed),
+ * so moving an entity takes only integer arithmetic.
+ *
+ * @author Daniel Ge
+ */
+final class EntityStore {
+    // Values of kind[]
+    static final byte SHIP = 0, ASTEROID = 1, BULLET = 2;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    int size;
+    int[] x, y;
+    int[] previousX, previousY;
+    int[] width, height;
+    int[] velocityX, velocityY;
+    double[] theta;
+    int[] drag;
+    boolean[] destroyed;
+    boolean[] hostile;
+    byte[] kind;
+    GameObject[] views;
+
+    // Number of entities of each kind
+    private final int[] counts = new int[BULLET + 1];
+
+    /**
+     * Creates a new, empty EntityStore.
+     */
+    EntityStore() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the number of entities in the store.
+     *
+     * @return  The number of entities in the store
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of entities of the given kind.
+     *
+     * @param kind  One of the kind constants
+     * @return      The number of entities of that kind
+     */
+    int count(byte kind) {
+        return counts[kind];
+    }
+
+    /**
+     * Returns the GameObject viewing the given slot.
+     *
+     * @param i The slot
+     * @return  The GameObject in slot {@code i}
+     */
+    GameObject get(int i) {
+        return views[i];
+    }
+
+    /**
+     * Determines whether the bounding boxes of two entities intersect. The
+     * bounding box of an entity is width x height, centered on (x, y), the
+     * same box as GameObject.boundingShape().
+     *
+     * @param i Slot of the first entity
+     * @param j Slot of the second entity
+     * @return  {@code true} if the bounding boxes intersect, {@code false} if
+     *          otherwise.
+     * @see GameObject#intersect
+     */
+    boolean intersect(int i, int j) {
+        int xi = Fixed.toInt(x[i]), yi = Fixed.toInt(y[i]);
+        int xj = Fixed.toInt(x[j]), yj = Fixed.toInt(y[j]);
+        return boxesIntersect(
+                xi - width[i]/2, yi - height[i]/2, width[i], height[i],
+                xj - width[j]/2, yj - height[j]/2, width[j], height[j]);
+    }
+
+    /**
+     * Determines whether two boxes intersect, the same way that
+     * Rectangle2D.intersects() does for boxes with a positive size.
+     *
+     * @return  {@code true} if the boxes intersect, {@code false} if
+     *          otherwise.
+     */
+    static boolean boxesIntersect(int ax, int ay, int aWidth, int aHeight,
+            int bx, int by, int bWidth, int bHeight) {
+        return ax < bx + bWidth && bx < ax + aWidth &&
+               ay < by + bHeight && by < ay + aHeight;
+    }
+
+    /**
+     * Copy the state of a GameObject into a new slot at the end of the store
+     * and make the GameObject a view over that slot.
+     *
+     * @param o The GameObject to add
+     */
+    void add(GameObject o) {
+        if (size == x.length)
+            grow();
+
+        int i = size++;
+        x[i] = previousX[i] = o.getFixedX();
+        y[i] = previousY[i] = o.getFixedY();
+        width[i] = o.WIDTH;
+        height[i] = o.HEIGHT;
+        velocityX[i] = o.getFixedVelocityX();
+        velocityY[i] = o.getFixedVelocityY();
+        theta[i] = o.getTheta();
+        drag[i] = Fixed.fromDouble(o.drag());
+        destroyed[i] = o.isDestroyed();
+        hostile[i] = o instanceof HostileObject;
+        kind[i] = o.kind();
+        counts[kind[i]]++;
+        views[i] = o;
+        o.attach(this, i);
+    }
+
+    /**
+     * Remove every destroyed entity. Each one is replaced by the last entity
+     * in the store, and its GameObject keeps a copy of its final state.
+     */
+    void removeDestroyed() {
+        int i = 0;
+        while (i < size) {
+            if (destroyed[i]) {
+                counts[kind[i]]--;
+                views[i].detach();
+                moveSlot(size - 1, i);
+                size--;
+            }
+            else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Copy every entity into a snapshot.
+     *
+     * @param s The snapshot to save into
+     */
+    void save(WorldSnapshot s) {
+        s.ensureCapacity(size);
+        s.size = size;
+        System.arraycopy(x, 0, s.x, 0, size);
+        System.arraycopy(y, 0, s.y, 0, size);
+        System.arraycopy(previousX, 0, s.previousX, 0, size);
+        System.arraycopy(previousY, 0, s.previousY, 0, size);
+        System.arraycopy(width, 0, s.entityWidth, 0, size);
+        System.arraycopy(height, 0, s.entityHeight, 0, size);
+        System.arraycopy(velocityX, 0, s.velocityX, 0, size);
+        System.arraycopy(velocityY, 0, s.velocityY, 0, size);
+        System.arraycopy(theta, 0, s.theta, 0, size);
+        System.arraycopy(destroyed, 0, s.destroyed, 0, size);
+        System.arraycopy(kind, 0, s.kind, 0, size);
+        for (int i = 0; i < size; i++) {
+            if (kind[i] == BULLET) {
+                Bullet b = (Bullet) views[i];
+                s.bulletTicks[i] = b.getTicksLeft();
+                s.owner[i] = b.isFriendly() ? b.getOwner().getPlayer() : -1;
+            }
+            else {
+                s.bulletTicks[i] = 0;
+                s.owner[i] = kind[i] == SHIP ?
+                        ((SpaceShip) views[i]).getPlayer() : -1;
+            }
+        }
+    }
+
+    /**
+     * Mix the state of every entity that save() saves into a checksum, in
+     * slot order.
+     *
+     * @param h The checksum so far
+     * @return  The new checksum
+     * @see World#checksum
+     */
+    long checksum(long h) {
+        h = World.hash(h, size);
+        for (int i = 0; i < size; i++) {
+            h = World.hash(h, kind[i] | (destroyed[i] ? 0x100 : 0));
+            h = World.hash(h, x[i]);
+            h = World.hash(h, y[i]);
+            h = World.hash(h, velocityX[i]);
+            h = World.hash(h, velocityY[i]);
+            h = World.hash(h, Double.doubleToLongBits(theta[i]));
+            if (kind[i] == BULLET)
+                h = World.hash(h, ((Bullet) views[i]).getTicksLeft());
+        }
+        return h;
+    }
+
+    /**
+     * Overwrite the state of every entity with the state in a snapshot. The
+     * store must already hold a view of the right kind in every slot of the
+     * snapshot, in the same order.
+     *
+     * @param s The snapshot to restore
+     */
+    void restore(WorldSnapshot s) {
+        System.arraycopy(s.x, 0, x, 0, size);
+        System.arraycopy(s.y, 0, y, 0, size);
+        System.arraycopy(s.previousX, 0, previousX, 0, size);
+        System.arraycopy(s.previousY, 0, previousY, 0, size);
+        System.arraycopy(s.velocityX, 0, velocityX, 0, size);
+        System.arraycopy(s.velocityY, 0, velocityY, 0, size);
+        System.arraycopy(s.theta, 0, theta, 0, size);
+        System.arraycopy(s.destroyed, 0, destroyed, 0, size);
+    }
+
+    /**
+     * Remove every entity.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            views[i].detach();
+            views[i] = null;
+        }
+        size = 0;
+        for (int k = 0; k < counts.length; k++)
+            counts[k] = 0;
+    }
+
+    /**
+     * Update the location of every entity, wrapping around the edges of the
+     * field.
+     *
+     * @param rightBound    Width of the field in pixels
+     * @param bottomBound   Height of the field in pixels
+     */
+    void moveAll(int rightBound, int bottomBound) {
+        int right = Fixed.fromInt(rightBound);
+        int bottom = Fixed.fromInt(bottomBound);
+        for (int i = 0; i < size; i++)
+            step(i, right, bottom);
+    }
+
+    /**
+     * Update the location of a single entity.
+     *
+     * @param i             The slot to move
+     * @param rightBound    Width of the field in pixels
+     * @param bottomBound   Height of the field in pixels
+     * @see GameObject#move
+     */
+    void move(int i, int rightBound, int bottomBound) {
+        step(i, Fixed.fromInt(rightBound), Fixed.fromInt(bottomBound));
+    }
+
+    /**
+     * Move a single entity within a field whose size is in fixed point.
+     */
+    private void step(int i, int right, int bottom) {
+        previousX[i] = x[i];
+        previousY[i] = y[i];
+
+        int newX = x[i] + velocityX[i];
+        int newY = y[i] + velocityY[i];
+
+        if (newX >= right)
+            newX -= right;
+        else if (newX < 0)
+            newX += right;
+        if (newY >= bottom)
+            newY -= bottom;
+        else if (newY < 0)
+            newY += bottom;
+
+        x[i] = newX;
+        y[i] = newY;
+        if (drag[i] != Fixed.ONE) {
+            velocityX[i] = Fixed.mul(velocityX[i], drag[i]);
+            velocityY[i] = Fixed.mul(velocityY[i], drag[i]);
+        }
+    }
+
+    /**
+     * Returns where to draw an entity along one axis, between where it was
+     * before the last move and where it is now. Entities that wrapped around
+     * the edge of the field are interpolated across the edge.
+     *
+     * @param previous  Coordinate before the last move, in fixed point
+     * @param current   Coordinate after the last move, in fixed point
+     * @param alpha     How far between the two to draw, from 0.0 to 1.0
+     * @param bound     Size of the field along this axis in pixels
+     * @return          The coordinate to draw at in pixels
+     */
+    static int interpolate(int previous, int current, float alpha, int bound) {
+        bound = Fixed.fromInt(bound);
+        int delta = current - previous;
+        if (delta > bound / 2)
+            delta -= bound;
+        else if (delta < -bound / 2)
+            delta += bound;
+
+        int position = previous + Math.round(delta * alpha);
+        if (position < 0)
+            position += bound;
+        else if (position >= bound)
+            position -= bound;
+        return Fixed.toInt(position);
+    }
+
+    /**
+     * Move the entity in slot {@code from} into slot {@code to}, overwriting
+     * whatever was there.
+     */
+    private void moveSlot(int from, int to) {
+        if (from != to) {
+            x[to] = x[from];
+            y[to] = y[from];
+            previousX[to] = previousX[from];
+            previousY[to] = previousY[from];
+            width[to] = width[from];
+            height[to] = height[from];
+            velocityX[to] = velocityX[from];
+            velocityY[to] = velocityY[from];
+            theta[to] = theta[from];
+            drag[to] = drag[from];
+            destroyed[to] = destroyed[from];
+            hostile[to] = hostile[from];
+            kind[to] = kind[from];
+            views[to] = views[from];
+            views[to].attach(this, to);
+        }
+        views[from] = null;
+    }
+
+    private void grow() {
+        int oldSize = x.length;
+        int[] oldX = x, oldY = y, oldWidth = width, oldHeight = height,
+              oldPreviousX = previousX, oldPreviousY = previousY,
+              oldVelocityX = velocityX, oldVelocityY = velocityY,
+              oldDrag = drag;
+        double[] oldTheta = theta;
+        boolean[] oldDestroyed = destroyed, oldHostile = hostile;
+        byte[] oldKind = kind;
+        GameObject[] oldViews = views;
+
+        allocate(oldSize * 2);
+        System.arraycopy(oldX, 0, x, 0, oldSize);
+        System.arraycopy(oldY, 0, y, 0, oldSize);
+        System.arraycopy(oldPreviousX, 0, previousX, 0, oldSize);
+        System.arraycopy(oldPreviousY, 0, previousY, 0, oldSize);
+        System.arraycopy(oldWidth, 0, width, 0, oldSize);
+        System.arraycopy(oldHeight, 0, height, 0, oldSize);
+        System.arraycopy(oldVelocityX, 0, velocityX, 0, oldSize);
+        System.arraycopy(oldVelocityY, 0, velocityY, 0, oldSize);
+        System.arraycopy(oldTheta, 0, theta, 0, oldSize);
+        System.arraycopy(oldDrag, 0, drag, 0, oldSize);
+        System.arraycopy(oldDestroyed, 0, destroyed, 0, oldSize);
+        System.arraycopy(oldHostile, 0, hostile, 0, oldSize);
+        System.arraycopy(oldKind, 0, kind, 0, oldSize);
+        System.arraycopy(oldViews, 0, views, 0, oldSize);
+    }
+
+    private void allocate(int capacity) {
+        x = new int[capacity];
+        y = new int[capacity];
+        previousX = new int[capacity];
+        previousY = new int[capacity];
+        width = new int[capacity];
+        height = new int[capacity];
+        velocityX = new int[capacity];
+        velocityY = new int[capacity];
+        theta = new double[capacity];
+        drag = new int[capacity];
+        destroyed = new boolean[capacity];
+        hostile = new boolean[capacity];
+        kind = new byte[capacity];
+        views = new GameObject[capacity];
+    }
+}
@@ -0,0 +1,107 @@
+package asteroid;
+
+/**
+ * Fixed holds the arithmetic of the 16.16 fixed-point numbers the World
+ * keeps positions and velocities in: an int whose upper 16 bits are the
+ * whole pixels and whose lower 16 bits are the fraction of a pixel. Moving
+ * a GameObject is then integer addition, which is exact, gives the same
+ * result on every JVM, and keeps the sub-pixel part of slow velocities that
+ * truncating to whole pixels every tick used to throw away.
+ *
+ * Sines and cosines come from a table built once with StrictMath, since
+ * Math.sin() may differ in the last bit from one JVM to another.
+ *
+ * @author Daniel Ge
+ */
+final class Fixed {
+    static final int SHIFT = 16;
+    static final int ONE = 1 << SHIFT;
+
+    // The sine table covers a whole turn in ANGLES steps
+    static final int ANGLES = 4096;
+    private static final int ANGLE_MASK = ANGLES - 1;
+    private static final double ANGLE_SCALE = ANGLES / (2 * Math.PI);
+    private static final int[] SIN = new int[ANGLES];
+
+    static {
+        for (int a = 0; a < ANGLES; a++)
+            SIN[a] = fromDouble(StrictMath.sin(a * 2 * Math.PI / ANGLES));
+    }
+
+    private Fixed() {
+    }
+
+    /**
+     * Returns the fixed-point value of a whole number of pixels.
+     */
+    static int fromInt(int i) {
+        return i << SHIFT;
+    }
+
+    /**
+     * Returns the fixed-point value nearest a double.
+     */
+    static int fromDouble(double d) {
+        return (int) Math.round(d * ONE);
+    }
+
+    /**
+     * Returns the whole pixels of a fixed-point value, rounded down.
+     */
+    static int toInt(int f) {
+        return f >> SHIFT;
+    }
+
+    /**
+     * Returns the exact value of a fixed-point value as a double.
+     */
+    static double toDouble(int f) {
+        return f / (double) ONE;
+    }
+
+    /**
+     * Returns the product of two fixed-point values, rounded towards zero so
+     * that positive and negative values shrink alike.
+     */
+    static int mul(int a, int b) {
+        return (int) ((long) a * b / ONE);
+    }
+
+    /**
+     * Returns the step of the sine table nearest an angle.
+     *
+     * @param angle An angle in radians, of any size
+     * @return      The step, from 0 to {@code ANGLES - 1}
+     */
+    static int angleIndex(double angle) {
+        return (int) Math.round(angle * ANGLE_SCALE) & ANGLE_MASK;
+    }
+
+    /**
+     * Returns the sine of an angle in steps of the table.
+     */
+    static int sin(int index) {
+        return SIN[index & ANGLE_MASK];
+    }
+
+    /**
+     * Returns the cosine of an angle in steps of the table.
+     */
+    static int cos(int index) {
+        return SIN[(index + ANGLES / 4) & ANGLE_MASK];
+    }
+
+    /**
+     * Returns the sine of an angle in radians, from the table.
+     */
+    static int sin(double angle) {
+        return sin(angleIndex(angle));
+    }
+
+    /**
+     * Returns the cosine of an angle in radians, from the table.
+     */
+    static int cos(double angle) {
+        return cos(angleIndex(angle));
+    }
+}
@@ -2,6 +2,11 @@ package asteroid;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
 import javax.swing.*;
 
 /**
@@ -32,7 +37,187 @@ public class Game extends JFrame {
                 space.play();
             }
         });
+        final JFileChooser chooser = new JFileChooser();
+        JMenuItem fileMenuSaveRecording = new JMenuItem("Save Recording...");
+        fileMenuSaveRecording.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (chooser.showSaveDialog(Game.this) !=
+                        JFileChooser.APPROVE_OPTION)
+                    return;
+                try {
+                    if (!space.saveRecording(chooser.getSelectedFile()))
+                        JOptionPane.showMessageDialog(Game.this,
+                                "There is no game to save.");
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(Game.this,
+                            "Could not save the recording: " + ex.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        JMenuItem fileMenuReplay = new JMenuItem("Replay...");
+        fileMenuReplay.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (chooser.showOpenDialog(Game.this) !=
+                        JFileChooser.APPROVE_OPTION)
+                    return;
+                try {
+                    space.replay(Recording.read(chooser.getSelectedFile()));
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(Game.this,
+                            "Could not open the recording: " + ex.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        JMenuItem fileMenuJoin = new JMenuItem("Join Network Game...");
+        fileMenuJoin.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                String server = JOptionPane.showInputDialog(Game.this,
+                        "Server (host:port)", "localhost:" + Protocol.PORT);
+                if (server == null)
+                    return;
+                int colon = server.lastIndexOf(':');
+                final GameClient client;
+                try {
+                    InetSocketAddress address = colon < 0 ?
+                            new InetSocketAddress(server, Protocol.PORT) :
+                            new InetSocketAddress(server.substring(0, colon),
+                                    Integer.parseInt(server.substring(colon + 1)));
+                    client = new GameClient(address);
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(Game.this,
+                            "Could not join the game: " + ex.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(Game.this,
+                            "Not a server address: " + server, "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                // Wait for the server on another thread, so that the window
+                // is still drawn in the meantime.
+                new SwingWorker<Void, Void>() {
+                    @Override
+                    protected Void doInBackground() throws IOException {
+                        client.join(3000);
+                        return null;
+                    }
+
+                    @Override
+                    protected void done() {
+                        try {
+                            get();
+                            space.join(client);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        } catch (ExecutionException ex) {
+                            JOptionPane.showMessageDialog(Game.this,
+                                    "Could not join the game: " +
+                                    ex.getCause().getMessage(),
+                                    "Error", JOptionPane.ERROR_MESSAGE);
+                            try {
+                                client.close();
+                            } catch (IOException ignored) {
+                            }
+                        }
+                    }
+                }.execute();
+            }
+        });
+        JMenuItem fileMenuHeadToHead = new JMenuItem("Play Head-to-Head...");
+        fileMenuHeadToHead.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                String other = JOptionPane.showInputDialog(Game.this,
+                        "Other player (host:port)",
+                        "localhost:" + Protocol.PEER_PORT);
+                if (other == null)
+                    return;
+                String port = JOptionPane.showInputDialog(Game.this,
+                        "Listen on port", "" + Protocol.PEER_PORT);
+                if (port == null)
+                    return;
+                int colon = other.lastIndexOf(':');
+                final RollbackPeer peer;
+                try {
+                    InetSocketAddress address = colon < 0 ?
+                            new InetSocketAddress(other, Protocol.PEER_PORT) :
+                            new InetSocketAddress(other.substring(0, colon),
+                                    Integer.parseInt(other.substring(colon + 1)));
+                    peer = new RollbackPeer(Integer.parseInt(port), address);
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(Game.this,
+                            "Could not start the game: " + ex.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(Game.this,
+                            "Not an address and port: " + other + ", " + port,
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                // The other player may take a while to start, so wait for
+                // them on another thread, with a dialog that can cancel it.
+                final JOptionPane waiting = new JOptionPane(
+                        "Waiting for " + other + "...",
+                        JOptionPane.INFORMATION_MESSAGE,
+                        JOptionPane.DEFAULT_OPTION, null,
+                        new Object[] { "Cancel" });
+                final JDialog dialog = waiting.createDialog(Game.this,
+                        "Play Head-to-Head");
+                dialog.setModal(false);
+                waiting.addPropertyChangeListener(JOptionPane.VALUE_PROPERTY,
+                        new PropertyChangeListener() {
+                    public void propertyChange(PropertyChangeEvent evt) {
+                        peer.cancel();
+                    }
+                });
+                dialog.setVisible(true);
+
+                new SwingWorker<Void, Void>() {
+                    @Override
+                    protected Void doInBackground() throws IOException {
+                        peer.connect(10000);
+                        return null;
+                    }
+
+                    @Override
+                    protected void done() {
+                        // The dialog is only answered by cancelling it
+                        boolean cancelled = waiting.getValue() !=
+                                JOptionPane.UNINITIALIZED_VALUE;
+                        dialog.dispose();
+                        try {
+                            get();
+                            if (!cancelled) {
+                                space.join(peer);
+                                return;
+                            }
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        } catch (ExecutionException ex) {
+                            if (!cancelled)
+                                JOptionPane.showMessageDialog(Game.this,
+                                        "Could not start the game: " +
+                                        ex.getCause().getMessage(),
+                                        "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                        try {
+                            peer.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }.execute();
+            }
+        });
         fileMenu.add(fileMenuNewGame);
+        fileMenu.add(fileMenuJoin);
+        fileMenu.add(fileMenuHeadToHead);
+        fileMenu.add(fileMenuSaveRecording);
+        fileMenu.add(fileMenuReplay);
         fileMenu.add(fileMenuExit);
         menuBar.add(fileMenu);
 
@@ -0,0 +1,360 @@
+package asteroid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketTimeoutException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * GameClient plays one SpaceShip in the World of a GameServer. It keeps its
+ * own copy of the World and steps it every tick with the local input, so the
+ * SpaceShip responds at once instead of a round trip later. The other players
+ * are predicted to keep holding down whatever they held down last.
+ *
+ * Whenever the state of a newer tick arrives from the server, the World is
+ * reset to it, and the inputs the server had not taken into account yet are
+ * applied again on top. Where the prediction was right, this changes
+ * nothing.
+ *
+ * A GameClient is not thread-safe; it is meant to be ticked by the thread
+ * that plays the game (e.g. the loop of Space).
+ *
+ * @author Daniel Ge
+ * @see Protocol
+ */
+public final class GameClient implements Closeable {
+    // Inputs (and predictions) are kept for this many ticks, which must be
+    // more than the round trip time in ticks.
+    private static final int WINDOW = 64, WINDOW_MASK = WINDOW - 1;
+
+    // How often to say HELLO while joining
+    private static final int HELLO_INTERVAL = 200;
+
+    private final InetSocketAddress server;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final LinkConditioner link;
+
+    private int player = -1;
+    private boolean full;
+    private World world;
+
+    // What every player is predicted to hold down
+    private int[] inputs;
+
+    // Inputs sent, and when, by sequence number modulo WINDOW. seq is the
+    // newest input, ack the newest one the server has applied.
+    private final int[] pending = new int[WINDOW];
+    private final long[] sentAt = new long[WINDOW];
+    private int seq, ack;
+
+    // Tick of the newest state from the server, or -1 for none yet
+    private long stateTick = -1;
+
+    // The predicted state of the own SpaceShip at each tick modulo WINDOW, to
+    // find out how often the prediction was wrong.
+    private final long[] predicted = new long[WINDOW];
+    private final long[] predictedTick = new long[WINDOW];
+
+    private long states, mispredictions;
+    private double roundTrip;
+
+    // Reused for every datagram
+    private final WorldSnapshot snapshot = new WorldSnapshot();
+    private final ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_DATAGRAM);
+    private final ByteBuffer out = ByteBuffer.allocate(64);
+
+    /**
+     * Creates a new GameClient for a server. It does not join the game until
+     * {@link #join} is called.
+     *
+     * @param server    The address of the server
+     * @throws IOException  if no socket can be opened
+     */
+    public GameClient(InetSocketAddress server) throws IOException {
+        this(server, new LinkConditioner());
+    }
+
+    /**
+     * Creates a new GameClient that sends through a LinkConditioner.
+     */
+    GameClient(InetSocketAddress server, LinkConditioner link)
+            throws IOException {
+        this.server = server;
+        this.link = link;
+        channel = DatagramChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.connect(server);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Join the game of the server, waiting until it answers.
+     *
+     * @param timeoutMillis How long to wait for an answer
+     * @throws SocketTimeoutException   if the server does not answer in time
+     * @throws IOException              if the game is full, or on other I/O
+     *                                  errors
+     */
+    public void join(int timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+        long nextHello = System.nanoTime();
+        while (player < 0) {
+            long now = System.nanoTime();
+            if (now - deadline >= 0)
+                throw new SocketTimeoutException("No answer from " + server);
+            if (now - nextHello >= 0) {
+                out.clear();
+                out.put(Protocol.HELLO);
+                out.putInt(Protocol.MAGIC);
+                out.flip();
+                link.send(channel, out, server);
+                nextHello = now + HELLO_INTERVAL * 1000000L;
+            }
+
+            long wait = Math.min(Math.min(nextHello, deadline) - now,
+                    link.nanosUntilNext());
+            selector.select(Math.max(wait / 1000000, 1));
+            selector.selectedKeys().clear();
+            receive();
+            link.flush(channel);
+            if (full)
+                throw new IOException("The game on " + server + " is full");
+        }
+    }
+
+    /**
+     * Send the input of the next tick to the server, take in what the server
+     * has sent and predict the World one tick further. Does nothing but take
+     * in what the server has sent until the first state has arrived.
+     *
+     * @param input The keys held down during this tick
+     * @throws IOException  on I/O errors
+     */
+    public void tick(int input) throws IOException {
+        if (player < 0)
+            throw new IllegalStateException("Not in a game");
+        receive();
+        link.flush(channel);
+        if (stateTick < 0)
+            return;
+
+        // Give up on inputs that have been unanswered for too long, rather
+        // than overwrite them.
+        seq++;
+        if (seq - ack >= WINDOW)
+            ack = seq - WINDOW + 1;
+        pending[seq & WINDOW_MASK] = input;
+        sentAt[seq & WINDOW_MASK] = System.nanoTime();
+
+        int count = Math.min(seq - ack, Protocol.REDUNDANCY);
+        out.clear();
+        out.put(Protocol.INPUT);
+        out.putInt(seq);
+        out.put((byte) count);
+        for (int q = seq - count + 1; q <= seq; q++)
+            out.put((byte) pending[q & WINDOW_MASK]);
+        out.flip();
+        link.send(channel, out, server);
+
+        inputs[player] = input;
+        world.step(inputs);
+        remember();
+    }
+
+    /**
+     * Handle every datagram that has arrived.
+     */
+    private void receive() throws IOException {
+        while (true) {
+            in.clear();
+            try {
+                if (channel.receive(in) == null)
+                    return;
+            } catch (PortUnreachableException e) {
+                // Nobody is listening (yet); the same as hearing nothing
+                return;
+            }
+            in.flip();
+            try {
+                switch (in.get()) {
+                    case Protocol.WELCOME:
+                        if (player < 0)
+                            welcome();
+                        break;
+                    case Protocol.FULL:
+                        full = true;
+                        break;
+                    case Protocol.STATE:
+                        if (player >= 0)
+                            reconcile();
+                        break;
+                    default:
+                        break;
+                }
+            } catch (BufferUnderflowException e) {
+                // A truncated datagram, which is ignored like a lost one
+            } catch (IllegalArgumentException e) {
+                // Likewise for a corrupt snapshot
+            }
+        }
+    }
+
+    private void welcome() {
+        int p = in.get(), players = in.get();
+        int width = in.getInt(), height = in.getInt();
+        long seed = in.getLong();
+        // A corrupt datagram is ignored like a lost one
+        if (p < 0 || p >= players || !World.isValidSize(width, height))
+            return;
+        world = new World(width, height, seed, players);
+        inputs = new int[players];
+        player = p;
+    }
+
+    /**
+     * Reset the World to the state the server sent, if it is newer than the
+     * World has seen, and apply the inputs the server has not applied yet on
+     * top of it.
+     */
+    private void reconcile() {
+        int a = in.getInt();
+        snapshot.read(in);
+        if (snapshot.getTick() <= stateTick ||
+                snapshot.players() != world.getPlayers())
+            return;
+        stateTick = snapshot.getTick();
+        states++;
+
+        int slot = (int) (stateTick & WINDOW_MASK);
+        if (predictedTick[slot] == stateTick &&
+                predicted[slot] != shipState(snapshot, player))
+            mispredictions++;
+
+        if (a > ack && a <= seq) {
+            ack = a;
+            double millis = (System.nanoTime() -
+                    sentAt[a & WINDOW_MASK]) / 1e6;
+            roundTrip = roundTrip == 0 ? millis : 0.9 * roundTrip + 0.1 * millis;
+        }
+
+        world.restoreState(snapshot);
+        System.arraycopy(snapshot.lastInput, 0, inputs, 0, inputs.length);
+        for (int q = ack + 1; q <= seq; q++) {
+            inputs[player] = pending[q & WINDOW_MASK];
+            world.step(inputs);
+            remember();
+        }
+    }
+
+    /**
+     * Remember the predicted state of the own SpaceShip at the current tick.
+     */
+    private void remember() {
+        long t = world.getTick();
+        int slot = (int) (t & WINDOW_MASK);
+        predictedTick[slot] = t;
+        SpaceShip ship = world.getSpaceShip(player);
+        predicted[slot] = shipState(ship.getFixedX(), ship.getFixedY(),
+                ship.getTheta(), ship.getFixedVelocityX(),
+                ship.getFixedVelocityY(), ship.isDestroyed(),
+                ship.inHyperspace(), ship.getScore());
+    }
+
+    /**
+     * Returns a hash of the state of player k's SpaceShip in a snapshot.
+     */
+    private static long shipState(WorldSnapshot s, int k) {
+        return shipState(s.shipX[k], s.shipY[k], s.shipTheta[k],
+                s.shipVelocityX[k], s.shipVelocityY[k], s.shipIsDestroyed[k],
+                s.hyperspace[k], s.score[k]);
+    }
+
+    private static long shipState(int x, int y, double theta, int vx,
+            int vy, boolean destroyed, boolean hyperspace, int score) {
+        long h = x;
+        h = h * 31 + y;
+        h = h * 31 + Double.doubleToLongBits(theta);
+        h = h * 31 + vx;
+        h = h * 31 + vy;
+        h = h * 31 + (destroyed ? 1 : 0) + (hyperspace ? 2 : 0);
+        return h * 31 + score;
+    }
+
+    /**
+     * Returns the World as predicted for the current tick. It is the same
+     * World object for the whole game.
+     *
+     * @return  The World, or {@code null} before joining
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Returns the player whose SpaceShip this client controls.
+     *
+     * @return  The player, or -1 before joining
+     */
+    public int getPlayer() {
+        return player;
+    }
+
+    /**
+     * Returns the number of newer states that have arrived from the server.
+     *
+     * @return  The number of states
+     */
+    public long getStates() {
+        return states;
+    }
+
+    /**
+     * Returns how often the own SpaceShip was not where it was predicted to
+     * be when the state of the server arrived.
+     *
+     * @return  The number of mispredictions
+     */
+    public long getMispredictions() {
+        return mispredictions;
+    }
+
+    /**
+     * Returns the time from sending an input until the state that applies
+     * it arrives, on average, including the wait for the server's tick.
+     *
+     * @return  The round trip time in milliseconds
+     */
+    public double getRoundTripMillis() {
+        return roundTrip;
+    }
+
+    /**
+     * Leave the game and close the socket.
+     */
+    public void close() throws IOException {
+        try {
+            if (player >= 0) {
+                out.clear();
+                out.put(Protocol.BYE);
+                out.flip();
+                channel.send(out, server);
+            }
+        } finally {
+            selector.close();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package asteroid;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * GameLoop runs a game on its own thread with a fixed simulation step. Time is
+ * measured with System.nanoTime(), and the simulation is advanced as many
+ * whole steps as have elapsed, so that it runs at the same speed no matter
+ * how often frames are rendered. Between steps, frames are rendered with an
+ * interpolation factor that tells how far along the next step they are.
+ *
+ * If the simulation falls too far behind (e.g. the machine is overloaded or
+ * was suspended), the missed time is dropped instead of being caught up all
+ * at once.
+ *
+ * @author Daniel Ge
+ */
+final class GameLoop implements Runnable {
+
+    /**
+     * What the GameLoop runs.
+     */
+    interface Callback {
+        /**
+         * Advance the simulation by one step.
+         */
+        void tick();
+
+        /**
+         * Render a frame.
+         *
+         * @param alpha How far the frame is between the previous step (0.0)
+         *              and the current step (1.0)
+         */
+        void render(float alpha);
+    }
+
+    // Never simulate more than this many steps in a row without rendering.
+    private static final int MAX_CATCH_UP_STEPS = 5;
+
+    private final Callback callback;
+    private final long stepNanos, frameNanos;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Creates a new GameLoop. It does not run until it is started.
+     *
+     * @param callback      What to run
+     * @param stepMillis    Length of a simulation step in milliseconds
+     * @param frameRate     Maximum number of frames rendered per second
+     */
+    GameLoop(Callback callback, int stepMillis, int frameRate) {
+        this.callback = callback;
+        this.stepNanos = stepMillis * 1000000L;
+        this.frameNanos = 1000000000L / Math.max(frameRate, 1);
+    }
+
+    /**
+     * Start the loop thread, if it is not running already.
+     */
+    synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        thread = new Thread(this, "GameLoop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the loop thread and wait for it to finish the current step or
+     * frame.
+     */
+    synchronized void stop() {
+        if (!running)
+            return;
+        running = false;
+        LockSupport.unpark(thread);
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        thread = null;
+    }
+
+    /**
+     * Returns whether the loop thread is running.
+     *
+     * @return  {@code true} if the loop is running, {@code false} if not
+     */
+    boolean isRunning() {
+        return running;
+    }
+
+    public void run() {
+        long previous = System.nanoTime();
+        long lag = 0;
+        long nextFrame = previous;
+
+        while (running) {
+            long now = System.nanoTime();
+            lag += now - previous;
+            previous = now;
+
+            // Drop the time we cannot catch up on
+            if (lag > MAX_CATCH_UP_STEPS * stepNanos)
+                lag = MAX_CATCH_UP_STEPS * stepNanos;
+
+            while (lag >= stepNanos && running) {
+                callback.tick();
+                lag -= stepNanos;
+            }
+
+            if (now - nextFrame >= 0) {
+                callback.render((float) lag / stepNanos);
+                nextFrame = now + frameNanos;
+            }
+
+            // Sleep until the next step or frame is due, whichever is first.
+            long untilStep = stepNanos - lag;
+            long untilFrame = nextFrame - System.nanoTime();
+            long sleep = Math.min(untilStep, untilFrame);
+            if (sleep > 0)
+                LockSupport.parkNanos(this, sleep);
+        }
+    }
+}
@@ -1,11 +1,7 @@
 package asteroid;
 
-import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Shape;
-import java.awt.geom.Rectangle2D;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * GameObject describes the basic framework for every moving object in the
@@ -14,42 +10,37 @@ import java.util.Set;
  * @author Daniel Ge
  */
 public abstract class GameObject {
-    // right and bottomBound describe the boundaries of the JPanel.
-    protected static int rightBound, bottomBound;
-    
-    public static void setBounds (int right, int bottom) {
-        rightBound = right;
-        bottomBound = bottom;
-    }
-    
-    // objList is the global list of undestroyed GameObjects currently in Space
-    public static Set<GameObject> objList = new HashSet<GameObject>();
-    
-    /**
-     * Add this GameObject to the global list.
-     */
-    public void addToGlobalList() {
-        objList.add(this);
-    }
+    // The World this GameObject lives in.
+    protected final World world;
 
     /**
-     * Clear the global list.
+     * Add this GameObject to the global list of its World.
      */
-    public static void resetList() {
-        objList = new HashSet<GameObject>();
+    public void addToGlobalList() {
+        if (store == null)
+            world.entities.add(this);
     }
     
     
     // All fields and methods that describe the GameObject itself.
-    protected int x, y;
     protected final int WIDTH, HEIGHT;
-    protected double velocityX, velocityY;
-    protected double theta;
+
+    /* While the GameObject is in the global list, its state lives in slot
+     * index of store, and these fields are stale. Otherwise (before it is
+     * added, or after it is removed) these fields hold its state. Positions
+     * and velocities are in 16.16 fixed point, as in the store.
+     */
+    private int x, y;
+    private int velocityX, velocityY;
+    private double theta;
     private boolean destroyed;
+    private EntityStore store;
+    private int index = -1;
     
     /**
      * Creates a new GameObject.
      * 
+     * @param world         The World the GameObject lives in
      * @param x             X-coordinate
      * @param y             Y-coordinate
      * @param width         Width of the object (for bounding boxes) (x)
@@ -58,34 +49,296 @@ public abstract class GameObject {
      * @param velocityY     Velocity in the y direction
      * @param theta         Orientation of the GameObject in radians.
      */
-    public GameObject(int x, int y, int width, int height, double velocityX, 
-            double velocityY, double theta) {
-        this.x = x;
-        this.y = y;
+    public GameObject(World world, int x, int y, int width, int height,
+            double velocityX, double velocityY, double theta) {
+        this.world = world;
+        this.x = Fixed.fromInt(x);
+        this.y = Fixed.fromInt(y);
         this.WIDTH = width;
         this.HEIGHT = height;
+        this.velocityX = Fixed.fromDouble(velocityX);
+        this.velocityY = Fixed.fromDouble(velocityY);
+        this.theta = theta;
+        this.destroyed = false;
+    }
+
+    /**
+     * Make this GameObject a view over slot i of the store. Called by the
+     * EntityStore whenever the GameObject is added or changes slots.
+     */
+    void attach(EntityStore store, int i) {
+        this.store = store;
+        this.index = i;
+    }
+
+    /**
+     * Copy the state of this GameObject out of its slot. Called by the
+     * EntityStore when the GameObject is removed.
+     */
+    void detach() {
+        x = store.x[index];
+        y = store.y[index];
+        velocityX = store.velocityX[index];
+        velocityY = store.velocityY[index];
+        theta = store.theta[index];
+        destroyed = store.destroyed[index];
+        store = null;
+        index = -1;
+    }
+
+    /**
+     * Bring a GameObject that is not in the global list back to life with a
+     * new position, velocity and orientation, so that it can be reused
+     * instead of creating a new one.
+     *
+     * @param x             X-coordinate in fixed point
+     * @param y             Y-coordinate in fixed point
+     * @param velocityX     Velocity in the x direction in fixed point
+     * @param velocityY     Velocity in the y direction in fixed point
+     * @param theta         Orientation of the GameObject in radians.
+     * @throws IllegalStateException    if the GameObject is in the global list
+     */
+    void respawn(int x, int y, int velocityX, int velocityY,
+            double theta) {
+        setState(x, y, velocityX, velocityY, theta, false);
+    }
+
+    /**
+     * Set the whole state of a GameObject that is not in the global list,
+     * e.g. when restoring a WorldSnapshot.
+     *
+     * @throws IllegalStateException    if the GameObject is in the global list
+     * @see #respawn
+     */
+    void setState(int x, int y, int velocityX, int velocityY,
+            double theta, boolean destroyed) {
+        if (store != null)
+            throw new IllegalStateException("object is in the global list");
+        this.x = x;
+        this.y = y;
         this.velocityX = velocityX;
         this.velocityY = velocityY;
         this.theta = theta;
-        this.destroyed = false;
+        this.destroyed = destroyed;
+    }
+
+    /**
+     * Returns which kind of entity this is, as stored in EntityStore.kind.
+     *
+     * @return  One of the EntityStore kind constants
+     */
+    abstract byte kind();
+
+    /**
+     * Returns the factor the velocity is multiplied by after every move.
+     *
+     * @return  The drag on this GameObject, {@code 1.0} for none.
+     */
+    double drag() {
+        return 1.0;
+    }
+
+    /**
+     * Returns how many particles of debris the GameObject scatters when it
+     * is destroyed.
+     *
+     * @return  The number of particles, {@code 0} for none.
+     * @see ParticleSystem
+     */
+    int debris() {
+        return 0;
+    }
+
+    /**
+     * Returns the X-coordinate of the GameObject.
+     *
+     * @return  The X-coordinate
+     */
+    public int getX() {
+        return Fixed.toInt(getFixedX());
+    }
+
+    /**
+     * Returns the Y-coordinate of the GameObject.
+     *
+     * @return  The Y-coordinate
+     */
+    public int getY() {
+        return Fixed.toInt(getFixedY());
+    }
+
+    /**
+     * Returns the velocity of the GameObject in the x direction.
+     *
+     * @return  The x velocity
+     */
+    public double getVelocityX() {
+        return Fixed.toDouble(getFixedVelocityX());
+    }
+
+    /**
+     * Returns the velocity of the GameObject in the y direction.
+     *
+     * @return  The y velocity
+     */
+    public double getVelocityY() {
+        return Fixed.toDouble(getFixedVelocityY());
+    }
+
+    /**
+     * Returns the X-coordinate of the GameObject in 16.16 fixed point.
+     */
+    int getFixedX() {
+        return store == null ? x : store.x[index];
+    }
+
+    /**
+     * Returns the Y-coordinate of the GameObject in 16.16 fixed point.
+     */
+    int getFixedY() {
+        return store == null ? y : store.y[index];
+    }
+
+    /**
+     * Returns the x velocity of the GameObject in 16.16 fixed point.
+     */
+    int getFixedVelocityX() {
+        return store == null ? velocityX : store.velocityX[index];
+    }
+
+    /**
+     * Returns the y velocity of the GameObject in 16.16 fixed point.
+     */
+    int getFixedVelocityY() {
+        return store == null ? velocityY : store.velocityY[index];
+    }
+
+    /**
+     * Returns the orientation of the GameObject in radians.
+     *
+     * @return  The orientation
+     */
+    public double getTheta() {
+        return store == null ? theta : store.theta[index];
+    }
+
+    /**
+     * Returns the X-coordinate to draw the GameObject at, between where it was
+     * on the previous tick and where it is now.
+     *
+     * @param alpha How far between the previous tick (0.0) and the current
+     *              tick (1.0) to draw
+     * @return      The X-coordinate to draw at
+     */
+    public int getRenderX(float alpha) {
+        if (store == null)
+            return Fixed.toInt(x);
+        return EntityStore.interpolate(store.previousX[index], store.x[index],
+                alpha, world.getWidth());
+    }
+
+    /**
+     * Returns the Y-coordinate to draw the GameObject at, between where it was
+     * on the previous tick and where it is now.
+     *
+     * @param alpha How far between the previous tick (0.0) and the current
+     *              tick (1.0) to draw
+     * @return      The Y-coordinate to draw at
+     */
+    public int getRenderY(float alpha) {
+        if (store == null)
+            return Fixed.toInt(y);
+        return EntityStore.interpolate(store.previousY[index], store.y[index],
+                alpha, world.getHeight());
+    }
+
+    /**
+     * Move the GameObject to the given coordinates.
+     *
+     * @param x X-coordinate
+     * @param y Y-coordinate
+     */
+    protected void setLocation(int x, int y) {
+        x = Fixed.fromInt(x);
+        y = Fixed.fromInt(y);
+        if (store == null) {
+            this.x = x;
+            this.y = y;
+        }
+        else {
+            store.x[index] = x;
+            store.y[index] = y;
+        }
+    }
+
+    /**
+     * Set the velocity of the GameObject.
+     *
+     * @param velocityX Velocity in the x direction
+     * @param velocityY Velocity in the y direction
+     */
+    protected void setVelocity(double velocityX, double velocityY) {
+        setFixedVelocity(Fixed.fromDouble(velocityX),
+                Fixed.fromDouble(velocityY));
+    }
+
+    /**
+     * Set the velocity of the GameObject in 16.16 fixed point.
+     *
+     * @param velocityX Velocity in the x direction
+     * @param velocityY Velocity in the y direction
+     */
+    void setFixedVelocity(int velocityX, int velocityY) {
+        if (store == null) {
+            this.velocityX = velocityX;
+            this.velocityY = velocityY;
+        }
+        else {
+            store.velocityX[index] = velocityX;
+            store.velocityY[index] = velocityY;
+        }
+    }
+
+    /**
+     * Set the orientation of the GameObject.
+     *
+     * @param theta Orientation of the GameObject in radians
+     */
+    protected void setTheta(double theta) {
+        if (store == null)
+            this.theta = theta;
+        else
+            store.theta[index] = theta;
     }
 
     /**
      * Update the location of the GameObject.
      */
     public void move() {
+        int rightBound = world.getWidth(), bottomBound = world.getHeight();
+        if (store != null) {
+            store.move(index, rightBound, bottomBound);
+            return;
+        }
+
+        rightBound = Fixed.fromInt(rightBound);
+        bottomBound = Fixed.fromInt(bottomBound);
         x += velocityX;
         y += velocityY;
 
         // If the GameObject moves off-window, place it on the other side.
         if (x >= rightBound)
             x -= rightBound;
-        if (x <= 0)
+        else if (x < 0)
             x += rightBound;
         if (y >= bottomBound)
             y -= bottomBound;
-        if (y <= 0)
+        else if (y < 0)
             y += bottomBound;
+
+        int drag = Fixed.fromDouble(drag());
+        velocityX = Fixed.mul(velocityX, drag);
+        velocityY = Fixed.mul(velocityY, drag);
     }
 
     /**
@@ -93,9 +346,12 @@ public abstract class GameObject {
      * already destroyed.
      */
     public void destroy() {
-        if (this.destroyed)
+        if (isDestroyed())
             throw new IllegalStateException("object already destroyed");
-        this.destroyed = true;
+        if (store == null)
+            this.destroyed = true;
+        else
+            store.destroyed[index] = true;
     }
 
     /**
@@ -105,41 +361,57 @@ public abstract class GameObject {
      *          it is not.
      */
     public boolean isDestroyed() {
-        return this.destroyed;
+        return store == null ? destroyed : store.destroyed[index];
     }
 
     /**
-     * Returns the bounding shape for this GameObject.
+     * Returns the bounding shape for this GameObject. This is the
+     * WIDTH x HEIGHT box centered on (x, y) that intersect() tests, as a
+     * Shape for drawing and debugging.
      *
      * @return  The bounding Shape for this GameObject.
      */
     public abstract Shape boundingShape();
 
     /**
-     * Determines whether two objects intersect. Currently uses bounding boxes.
+     * Determines whether two objects intersect. Currently uses bounding boxes,
+     * which are compared directly rather than through boundingShape() so that
+     * nothing is allocated.
      *
      * @param o The other GameObject
      * @return  {@code true} if the two GameObjects intersect, {@code false} if
      *          otherwise.
      */
     public boolean intersect(GameObject o) {
-        Shape thisShape = this.boundingShape();
-        Shape oShape = o.boundingShape();
-
         // GameObjects cannot collide with a SpaceShip in hyperspace.
         if (o instanceof SpaceShip)
             if (((SpaceShip) o).inHyperspace())
                 return false;
 
-        return thisShape.intersects((Rectangle2D) oShape);
+        return EntityStore.boxesIntersect(
+                getX() - WIDTH/2, getY() - HEIGHT/2, WIDTH, HEIGHT,
+                o.getX() - o.WIDTH/2, o.getY() - o.HEIGHT/2, o.WIDTH, o.HEIGHT);
     }
 
     /**
-     * Draw the object to the screen.
+     * Draw the object to the screen where it is now.
      *
      * @param g The Graphics context.
      */
-    public abstract void draw (Graphics g);
+    public void draw (Graphics g) {
+        draw(g, 1.0f);
+    }
+
+    /**
+     * Draw the object to the screen, between where it was on the previous
+     * tick and where it is now.
+     *
+     * @param g     The Graphics context.
+     * @param alpha How far between the previous tick (0.0) and the current
+     *              tick (1.0) to draw
+     * @see #getRenderX
+     */
+    public abstract void draw (Graphics g, float alpha);
 
     @Override
     public String toString() {
@@ -149,9 +421,21 @@ public abstract class GameObject {
     /**
      * Global method for generating angles in radians at random.
      *
-     * @return  An angle such that [0, 2*PI]
+     * @param random    The random numbers of the World the angle is for
+     * @return          An angle such that [0, 2*PI]
+     */
+    public static double generateAngle(WorldRandom random) {
+        return random.nextDouble() * 2 * Math.PI;
+    }
+
+    /**
+     * Returns a random step of the sine table of Fixed, for angles that are
+     * only used to look up a sine and cosine.
+     *
+     * @param random    The random numbers of the World the angle is for
+     * @return          A step from 0 to {@code Fixed.ANGLES - 1}
      */
-    public static double generateAngle() {
-        return Math.random() * 2 * Math.PI;
+    static int generateAngleIndex(WorldRandom random) {
+        return (int) (random.nextDouble() * Fixed.ANGLES);
     }
 }
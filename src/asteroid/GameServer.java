@@ -0,0 +1,370 @@
+package asteroid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * GameServer runs the one true World of a network game, headless, and lets
+ * GameClients play in it over UDP. Every tick it applies the latest input of
+ * each player, steps the World and sends its whole state to every client,
+ * with the last input of the client it took into account. The clients
+ * predict the World in between (see GameClient).
+ *
+ * All of the networking is done on the thread that runs the server, with a
+ * non-blocking DatagramChannel and a Selector. Once the game is over the
+ * server keeps sending the final state until it is closed.
+ *
+ * @author Daniel Ge
+ * @see Protocol
+ */
+public final class GameServer implements Runnable, Closeable {
+    private static final int WIDTH = 640, HEIGHT = 480;
+    private static final long INTERVAL_NANOS = World.INTERVAL * 1000000L;
+
+    // Players that have not been heard from for this long leave the game
+    private static final long TIMEOUT_NANOS = 5000 * 1000000L;
+
+    // Inputs received ahead of the World are kept in a window of this many
+    // ticks. A client that gets more than MAX_BACKLOG inputs ahead has the
+    // oldest ones skipped, so that it does not lag behind for good.
+    private static final int WINDOW = 64, WINDOW_MASK = WINDOW - 1;
+    private static final int MAX_BACKLOG = 8;
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final LinkConditioner link;
+
+    private final World world;
+    private final Peer[] peers;
+    private final Map<SocketAddress, Peer> byAddress =
+            new HashMap<SocketAddress, Peer>();
+    private final int[] inputs;
+
+    // Reused for every datagram
+    private final WorldSnapshot snapshot = new WorldSnapshot();
+    private final ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_DATAGRAM);
+    private final ByteBuffer out = ByteBuffer.allocate(Protocol.MAX_DATAGRAM);
+
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new GameServer with a new game, listening on a UDP port.
+     *
+     * @param port      The port to listen on, or 0 for any free port
+     * @param players   Number of players
+     * @param seed      Seed of the game
+     * @throws IOException  if the port cannot be opened
+     */
+    public GameServer(int port, int players, long seed) throws IOException {
+        this(port, players, seed, new LinkConditioner());
+    }
+
+    /**
+     * Creates a new GameServer that sends through a LinkConditioner.
+     */
+    GameServer(int port, int players, long seed, LinkConditioner link)
+            throws IOException {
+        this.link = link;
+        world = new World(WIDTH, HEIGHT, seed, players);
+        peers = new Peer[players];
+        inputs = new int[players];
+
+        channel = DatagramChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.socket().bind(new InetSocketAddress(port));
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return  The UDP port
+     */
+    public int getPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the World of the game. It must only be looked at from the
+     * thread running the server, or once the server has stopped.
+     *
+     * @return  The World
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Run the game in real time until the server is closed.
+     */
+    public void run() {
+        long next = System.nanoTime();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                if (now - next >= 0) {
+                    tick();
+                    next += INTERVAL_NANOS;
+                    // Do not try to catch up on more than a few ticks
+                    if (now - next > 4 * INTERVAL_NANOS)
+                        next = now;
+                    continue;
+                }
+
+                long wait = Math.min(next - now, link.nanosUntilNext());
+                selector.select(Math.max(wait / 1000000, 1));
+                selector.selectedKeys().clear();
+                receive();
+                link.flush(channel);
+            }
+        } catch (IOException e) {
+            System.err.println("GameServer stopped: " + e);
+        } finally {
+            try {
+                selector.close();
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to do about it
+            }
+        }
+    }
+
+    /**
+     * Stop the server. It stops at the end of the tick it is in.
+     */
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Handle every datagram that has arrived.
+     */
+    private void receive() throws IOException {
+        while (true) {
+            in.clear();
+            SocketAddress from = channel.receive(in);
+            if (from == null)
+                return;
+            in.flip();
+            try {
+                handle(from);
+            } catch (BufferUnderflowException e) {
+                // A truncated datagram, which is ignored like a lost one
+            }
+        }
+    }
+
+    private void handle(SocketAddress from) throws IOException {
+        Peer p = byAddress.get(from);
+        if (p != null)
+            p.lastHeard = System.nanoTime();
+
+        switch (in.get()) {
+            case Protocol.HELLO:
+                if (in.getInt() != Protocol.MAGIC)
+                    return;
+                if (p == null) {
+                    int player = 0;
+                    while (player < peers.length && peers[player] != null)
+                        player++;
+                    if (player == peers.length) {
+                        out.clear();
+                        out.put(Protocol.FULL);
+                        out.flip();
+                        link.send(channel, out, from);
+                        return;
+                    }
+                    p = new Peer(from, player);
+                    peers[player] = p;
+                    byAddress.put(from, p);
+                }
+                // Also sent again if the first WELCOME was lost
+                out.clear();
+                out.put(Protocol.WELCOME);
+                out.put((byte) p.player);
+                out.put((byte) peers.length);
+                out.putInt(world.getWidth());
+                out.putInt(world.getHeight());
+                out.putLong(world.getSeed());
+                out.flip();
+                link.send(channel, out, from);
+                break;
+
+            case Protocol.INPUT:
+                if (p == null)
+                    return;
+                int newest = in.getInt();
+                int count = in.get();
+                if (count < 0 || count > Protocol.REDUNDANCY)
+                    return;
+                for (int k = 0; k < count; k++)
+                    p.offer(newest - count + 1 + k, in.get());
+                break;
+
+            case Protocol.BYE:
+                if (p != null)
+                    leave(p);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private void leave(Peer p) {
+        peers[p.player] = null;
+        byAddress.remove(p.address);
+    }
+
+    /**
+     * Step the World with the input of every player, and send the result to
+     * every client.
+     *
+     * @throws IOException  if the World is too big to send in a datagram, or
+     *                      on I/O errors
+     */
+    private void tick() throws IOException {
+        long now = System.nanoTime();
+        for (int k = 0; k < peers.length; k++) {
+            Peer p = peers[k];
+            if (p != null && now - p.lastHeard > TIMEOUT_NANOS) {
+                leave(p);
+                p = null;
+            }
+            inputs[k] = p == null ? 0 : p.take();
+        }
+        world.step(inputs);
+
+        world.saveState(snapshot);
+        if (1 + 4 + snapshot.byteSize() > Protocol.MAX_DATAGRAM)
+            throw new IOException("The World is too big to send");
+        for (Peer p : peers) {
+            if (p == null)
+                continue;
+            out.clear();
+            out.put(Protocol.STATE);
+            out.putInt(p.ack);
+            snapshot.write(out);
+            out.flip();
+            link.send(channel, out, p.address);
+        }
+    }
+
+    /**
+     * A client, and the inputs it has sent that the World has not taken yet.
+     */
+    private static final class Peer {
+        final SocketAddress address;
+        final int player;
+        long lastHeard = System.nanoTime();
+
+        // Inputs by sequence number, modulo WINDOW
+        private final int[] input = new int[WINDOW];
+        private final int[] sequence = new int[WINDOW];
+        private int next = 1, newest;
+
+        // The input applied last, and its sequence number
+        private int current;
+        int ack;
+
+        Peer(SocketAddress address, int player) {
+            this.address = address;
+            this.player = player;
+        }
+
+        void offer(int seq, int mask) {
+            if (seq < next || seq >= next + WINDOW)
+                return;
+            input[seq & WINDOW_MASK] = mask;
+            sequence[seq & WINDOW_MASK] = seq;
+            newest = Math.max(newest, seq);
+        }
+
+        /**
+         * Returns the input for the next tick. If the next input has not
+         * arrived (yet), the previous one is held down for another tick.
+         */
+        int take() {
+            if (newest - next >= MAX_BACKLOG)
+                next = newest - MAX_BACKLOG + 1;
+            int slot = next & WINDOW_MASK;
+            if (sequence[slot] == next) {
+                current = input[slot];
+                ack = next++;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Runs a server until it is killed. Options:
+     *
+     * <pre>
+     *   -port P        UDP port to listen on (default 7654)
+     *   -players N     number of players (default 2)
+     *   -seed S        seed of the game (default: random)
+     *   -latency MS    delay everything sent by MS milliseconds (default 0)
+     *   -jitter MS     and up to MS milliseconds more (default 0)
+     *   -loss PCT      drop PCT percent of what is sent (default 0)
+     * </pre>
+     *
+     * @param args  The options
+     */
+    public static void main(String[] args) throws IOException {
+        int port = Protocol.PORT, players = 2;
+        long seed = WorldRandom.newSeed();
+        int latency = 0, jitter = 0;
+        double loss = 0;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 == args.length)
+                    throw new IllegalArgumentException(option + " needs a value");
+                String value = args[++i];
+                if (option.equals("-port"))
+                    port = Integer.parseInt(value);
+                else if (option.equals("-players"))
+                    players = Integer.parseInt(value);
+                else if (option.equals("-seed"))
+                    seed = Long.parseLong(value);
+                else if (option.equals("-latency"))
+                    latency = Integer.parseInt(value);
+                else if (option.equals("-jitter"))
+                    jitter = Integer.parseInt(value);
+                else if (option.equals("-loss"))
+                    loss = Double.parseDouble(value) / 100;
+                else
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java asteroid.GameServer [-port P] " +
+                    "[-players N] [-seed S] [-latency MS] [-jitter MS] " +
+                    "[-loss PCT]");
+            System.exit(2);
+        }
+
+        GameServer server = new GameServer(port, players, seed,
+                new LinkConditioner(latency, jitter, loss, seed));
+        System.out.println("Serving " + players + " players on port " +
+                server.getPort());
+        server.run();
+    }
+}
@@ -1,8 +1,5 @@
 package asteroid;
 
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * Represents a GameObject set out to destroy the SpaceShip
  *
@@ -10,15 +7,11 @@ import java.util.Set;
  */
 public abstract class HostileObject extends GameObject {
 
-    // Global list of HostileObjects. Used primarily to determine how many
-    // HostileObjects are left on the screen.
-    private static Set<HostileObject> hostileList =
-            new HashSet<HostileObject>();
-
     /**
      * Creates a new HostileObject with the specified parameters. Also adds
-     * the HostileObject to the global list of HostileObjects.
+     * the HostileObject to the count of HostileObjects left in its World.
      *
+     * @param world     The World the HostileObject lives in
      * @param x         X-coordinate
      * @param y         Y-coordinate
      * @param width     Width of the HostileObject
@@ -28,42 +21,10 @@ public abstract class HostileObject extends GameObject {
      * @param theta     Orientation of the HostileObject in radians
      * @see GameObject#GameObject
      */
-    public HostileObject(int x, int y, int width, int height, double velocityX,
-            double velocityY, double theta) {
-        super(x, y, width, height, velocityX, velocityY, theta);
-        addToHostileList();
-    }
-
-    /**
-     * Add this object to the global list.
-     */
-    private void addToHostileList() {
-        hostileList.add(this);
-    }
-
-    /**
-     * Returns the size of the HostileObject global list.
-     *
-     * @return  The size of the HostileObject global list
-     */
-    public static int hostileSize() {
-        return hostileList.size();
-    }
-
-    /**
-     * Determines whether the global list is empty.
-     *
-     * @return  {@code true} if the list is empty, {@code false} if not
-     */
-    public static boolean listEmpty() {
-        return hostileSize() == 0;
-    }
-
-    /**
-     * Clear the HostileObject global list.
-     */
-    public static void clearList() {
-        hostileList = new HashSet<HostileObject>();
+    public HostileObject(World world, int x, int y, int width, int height,
+            double velocityX, double velocityY, double theta) {
+        super(world, x, y, width, height, velocityX, velocityY, theta);
+        world.hostilesLeft++;
     }
 
     /**
@@ -75,13 +36,14 @@ public abstract class HostileObject extends GameObject {
 
     /**
      * Destroy the object. Throws an IllegalStateException if the object is
-     * already destroyed. Also removes this HostileObject from the global list.
+     * already destroyed. Also removes this HostileObject from the count of
+     * HostileObjects left in its World.
      *
      * @see GameObject#destroy
      */
     @Override
     public void destroy() {
         super.destroy();
-        hostileList.remove(this);
+        world.hostilesLeft--;
     }
 }
@@ -0,0 +1,194 @@
+package asteroid;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Hud draws the text on top of Space: the score, PAUSED, GAME OVER,
+ * CONNECTION LOST and the instructions before the first game. Every piece
+ * of text is rendered once into an image, and the score is only rendered
+ * again when it changes, so drawing the Hud every frame is just a few image
+ * copies.
+ *
+ * @author Daniel Ge
+ */
+final class Hud {
+    private static final Font SCORE_FONT = new Font("Dialog", Font.BOLD, 20);
+    private static final Font MESSAGE_FONT = new Font("Dialog", Font.PLAIN, 30);
+
+    private static final String PAUSE_TEXT = "PAUSED";
+    private static final String LOSE_TEXT = "GAME OVER";
+    private static final String LOST_TEXT = "CONNECTION LOST";
+    private static final String INSTR1_TEXT = "PRESS F2 TO START";
+    private static final String INSTR2_TEXT =
+            "Help > Instructions FOR INSTRUCTIONS";
+
+    private final int width, height;
+
+    // The images are made for this GraphicsConfiguration, and are made again
+    // if the Hud is drawn somewhere else.
+    private GraphicsConfiguration config;
+    private TextImage pause, lose, lost, instr1, instr2;
+    private TextImage score;
+    private int scoreValue;
+
+    /**
+     * Creates a new Hud for a Space of the given size.
+     *
+     * @param width     Width of Space
+     * @param height    Height of Space
+     */
+    Hud(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Draw the score in the top left.
+     *
+     * @param g         The Graphics context.
+     * @param value     The score
+     */
+    void drawScore(Graphics2D g, int value) {
+        prepare(g);
+        if (score == null || value != scoreValue) {
+            score = render(score, SCORE_FONT, Color.WHITE,
+                    String.valueOf(value));
+            scoreValue = value;
+        }
+
+        // The baseline of the score is one line down from the top
+        score.draw(g, 100, score.metrics.getHeight());
+    }
+
+    /**
+     * Draw PAUSED in the center.
+     *
+     * @param g The Graphics context.
+     */
+    void drawPaused(Graphics2D g) {
+        prepare(g);
+        pause.draw(g, width/2 - pause.advance/2,
+                height/2 - pause.metrics.getHeight()/2);
+    }
+
+    /**
+     * Draw GAME OVER in the top half.
+     *
+     * @param g The Graphics context.
+     */
+    void drawGameOver(Graphics2D g) {
+        prepare(g);
+        lose.draw(g, width/2 - lose.advance/2, 150);
+    }
+
+    /**
+     * Draw CONNECTION LOST in the center.
+     *
+     * @param g The Graphics context.
+     */
+    void drawConnectionLost(Graphics2D g) {
+        prepare(g);
+        lost.draw(g, width/2 - lost.advance/2,
+                height/2 - lost.metrics.getHeight()/2);
+    }
+
+    /**
+     * Draw the instructions that are shown before the first game.
+     *
+     * @param g The Graphics context.
+     */
+    void drawInstructions(Graphics2D g) {
+        prepare(g);
+        instr1.draw(g, width/2 - instr1.advance/2, 150);
+        instr2.draw(g, width/2 - instr2.advance/2, 300);
+    }
+
+    /**
+     * Render the fixed text for the GraphicsConfiguration of {@code g}, if it
+     * has not been done already.
+     */
+    private void prepare(Graphics2D g) {
+        GraphicsConfiguration gc = g.getDeviceConfiguration();
+        if (gc == config)
+            return;
+
+        config = gc;
+        pause = render(null, MESSAGE_FONT, Color.RED, PAUSE_TEXT);
+        lose = render(null, MESSAGE_FONT, Color.WHITE, LOSE_TEXT);
+        lost = render(null, MESSAGE_FONT, Color.RED, LOST_TEXT);
+        instr1 = render(null, MESSAGE_FONT, Color.RED, INSTR1_TEXT);
+        instr2 = render(null, MESSAGE_FONT, Color.RED, INSTR2_TEXT);
+        score = null;
+    }
+
+    /**
+     * Render a line of text into an image, reusing {@code old} if it is big
+     * enough.
+     */
+    private TextImage render(TextImage old, Font font, Color color,
+            String text) {
+        FontMetrics metrics = old != null ? old.metrics : fontMetrics(font);
+        int textWidth = Math.max(metrics.stringWidth(text), 1);
+        int textHeight = Math.max(metrics.getHeight(), 1);
+
+        TextImage t = old;
+        if (t == null || t.image.getWidth() < textWidth) {
+            BufferedImage image = config.createCompatibleImage(textWidth,
+                    textHeight, Transparency.TRANSLUCENT);
+            t = new TextImage(image, metrics);
+        }
+        t.advance = metrics.stringWidth(text);
+
+        Graphics2D g = t.image.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, t.image.getWidth(), t.image.getHeight());
+            g.setComposite(AlphaComposite.SrcOver);
+            g.setFont(font);
+            g.setColor(color);
+            g.drawString(text, 0, metrics.getAscent());
+        } finally {
+            g.dispose();
+        }
+        return t;
+    }
+
+    private FontMetrics fontMetrics(Font font) {
+        BufferedImage scratch = config.createCompatibleImage(1, 1);
+        Graphics2D g = scratch.createGraphics();
+        try {
+            return g.getFontMetrics(font);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * A line of text rendered into an image, with the metrics needed to lay
+     * it out the same way as drawString().
+     */
+    private static final class TextImage {
+        final BufferedImage image;
+        final FontMetrics metrics;
+        int advance;
+
+        TextImage(BufferedImage image, FontMetrics metrics) {
+            this.image = image;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Draw the text with its baseline at (x, y), like drawString().
+         */
+        void draw(Graphics2D g, int x, int y) {
+            g.drawImage(image, x, y - metrics.getAscent(), null);
+        }
+    }
+}
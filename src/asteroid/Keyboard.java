@@ -0,0 +1,88 @@
+package asteroid;
+
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keyboard turns the keys that control the SpaceShip into a World input mask.
+ * Key events arrive on the event dispatch thread and are written into atomic
+ * bitmasks, which the simulation thread samples once per tick without
+ * locking.
+ *
+ * A key that is pressed and released again between two samples still shows
+ * up in the next sample, so that quick taps of the fire key are not lost.
+ *
+ * @author Daniel Ge
+ */
+final class Keyboard extends KeyAdapter {
+    // Keys held down right now, and keys pressed since the last sample.
+    private final AtomicInteger held = new AtomicInteger();
+    private final AtomicInteger pressed = new AtomicInteger();
+
+    /**
+     * Returns the input for the next tick: the keys held down, plus the keys
+     * that were pressed since the last call.
+     *
+     * @return  The input mask, as a combination of the World.INPUT_ bits
+     */
+    int sample() {
+        return held.get() | pressed.getAndSet(0);
+    }
+
+    /**
+     * Forget every key, e.g. when the window loses focus and the key releases
+     * would go somewhere else.
+     */
+    void clear() {
+        held.set(0);
+        pressed.set(0);
+    }
+
+    @Override
+    public void keyPressed(KeyEvent e) {
+        int bit = bit(e.getKeyCode());
+        if (bit != 0) {
+            set(held, bit);
+            set(pressed, bit);
+        }
+    }
+
+    @Override
+    public void keyReleased(KeyEvent e) {
+        int bit = bit(e.getKeyCode());
+        if (bit != 0) {
+            int old;
+            do {
+                old = held.get();
+            } while (!held.compareAndSet(old, old & ~bit));
+        }
+    }
+
+    private static void set(AtomicInteger mask, int bit) {
+        int old;
+        do {
+            old = mask.get();
+        } while (!mask.compareAndSet(old, old | bit));
+    }
+
+    /**
+     * Returns the input bit for a key, or 0 if the key does not control the
+     * SpaceShip.
+     */
+    private static int bit(int keyCode) {
+        switch (keyCode) {
+            // Rotate CCW
+            case KeyEvent.VK_LEFT:  return World.INPUT_LEFT;
+            // Rotate CW
+            case KeyEvent.VK_RIGHT: return World.INPUT_RIGHT;
+            // Accelerate forwards
+            case KeyEvent.VK_UP:    return World.INPUT_UP;
+            // Fire bullets
+            case KeyEvent.VK_SPACE: return World.INPUT_FIRE;
+            // Go hyperspace!
+            case KeyEvent.VK_SHIFT: return World.INPUT_HYPERSPACE;
+            default:                return 0;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package asteroid;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * KeyframeRecorder writes a seekable recording of a game: like a Recording it
+ * holds the input of every tick, but every {@code interval} ticks it also
+ * writes a keyframe, a full WorldSnapshot. A SeekableReplay can then jump to
+ * any tick by restoring the keyframe before it and simulating at most
+ * {@code interval - 1} ticks, instead of replaying the whole game.
+ *
+ * The file format is, in big-endian order:
+ *
+ * <pre>
+ *   int     MAGIC ("AKEY")
+ *   byte    VERSION
+ *   int     width
+ *   int     height
+ *   long    seed
+ *   int     interval
+ *   segments, one per keyframe:
+ *       the keyframe, as written by WorldSnapshot.write()
+ *       int     number of runs
+ *       runs    the input of the following ticks (up to the next keyframe),
+ *               encoded the same way as in a Recording
+ *   index:
+ *       int     number of keyframes
+ *       long    offset of each keyframe, then offset of its runs
+ *   footer:
+ *       int     number of ticks
+ *       long    offset of the index
+ *       int     MAGIC
+ * </pre>
+ *
+ * The index is at the end so that the file can be written in one pass; a
+ * reader finds it through the fixed-size footer.
+ *
+ * @author Daniel Ge
+ * @see SeekableReplay
+ */
+public final class KeyframeRecorder implements Closeable {
+    static final int MAGIC = 0x414b4559;
+    static final int VERSION = 5;
+    static final int HEADER_BYTES = 4 + 1 + 4 + 4 + 8 + 4;
+    static final int FOOTER_BYTES = 4 + 8 + 4;
+
+    private final World world;
+    private final int interval;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private long position;
+
+    // Reused to write each part of the file
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private final WorldSnapshot snapshot = new WorldSnapshot();
+
+    // The input since the last keyframe
+    private Recording segment;
+    private int ticks;
+
+    // Offsets of every keyframe and of the runs after it
+    private long[] index = new long[32];
+    private int keyframes;
+
+    private boolean closed;
+
+    /**
+     * Creates a new file to record a World into. The World must not have
+     * been stepped yet, and {@link #record} must be called with the input of
+     * every step.
+     *
+     * @param file      The file to write. It is replaced if it exists.
+     * @param world     The World to record
+     * @param interval  Number of ticks between keyframes
+     * @throws IOException  if the file cannot be written
+     * @throws IllegalArgumentException if the World has been stepped already
+     *                                  or the interval is not positive
+     */
+    public KeyframeRecorder(File file, World world, int interval)
+            throws IOException {
+        if (world.getTick() != 0)
+            throw new IllegalArgumentException("World has been stepped already");
+        if (interval <= 0)
+            throw new IllegalArgumentException("interval must be positive");
+        this.world = world;
+        this.interval = interval;
+
+        this.file = new RandomAccessFile(file, "rw");
+        this.file.setLength(0);
+        this.channel = this.file.getChannel();
+
+        ByteBuffer header = buffer(HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.put((byte) VERSION);
+        header.putInt(world.getWidth());
+        header.putInt(world.getHeight());
+        header.putLong(world.getSeed());
+        header.putInt(interval);
+        flush();
+    }
+
+    /**
+     * Record the input of the next tick. Must be called right before the
+     * World is stepped with it.
+     *
+     * @param input The input that will be passed to World.step()
+     * @throws IOException  if the file cannot be written
+     * @throws IllegalStateException    if the World was stepped without being
+     *                                  recorded, or the recorder is closed
+     */
+    public void record(int input) throws IOException {
+        if (closed)
+            throw new IllegalStateException("Recorder is closed");
+        if (world.getTick() != ticks)
+            throw new IllegalStateException(
+                    "World was stepped without being recorded");
+
+        if (ticks % interval == 0)
+            writeKeyframe();
+        segment.add(input);
+        ticks++;
+    }
+
+    /**
+     * Finish the file: write the input of the last segment, the index and the
+     * footer.
+     *
+     * @throws IOException  if the file cannot be written
+     */
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            if (segment == null)
+                writeKeyframe();
+            writeRuns();
+
+            long indexOffset = position;
+            ByteBuffer out = buffer(4 + keyframes * 2 * 8);
+            out.putInt(keyframes);
+            for (int k = 0; k < keyframes * 2; k++)
+                out.putLong(index[k]);
+            flush();
+
+            out = buffer(FOOTER_BYTES);
+            out.putInt(ticks);
+            out.putLong(indexOffset);
+            out.putInt(MAGIC);
+            flush();
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Write a recorded game to a seekable file, by replaying it.
+     *
+     * @param recording The game to write
+     * @param file      The file to write
+     * @param interval  Number of ticks between keyframes
+     * @throws IOException  if the file cannot be written
+     */
+    public static void write(Recording recording, File file, int interval)
+            throws IOException {
+        Replay replay = new Replay(recording);
+        KeyframeRecorder recorder = new KeyframeRecorder(file,
+                replay.getWorld(), interval);
+        try {
+            for (int r = 0; r < recording.runs(); r++) {
+                int input = recording.runInput(r);
+                for (int t = 0; t < recording.runLength(r); t++) {
+                    recorder.record(input);
+                    replay.step();
+                }
+            }
+        } finally {
+            recorder.close();
+        }
+    }
+
+    /**
+     * End the current segment and start a new one with a keyframe of the
+     * World as it is now.
+     */
+    private void writeKeyframe() throws IOException {
+        if (segment != null)
+            writeRuns();
+
+        if (keyframes * 2 == index.length) {
+            long[] newIndex = new long[index.length * 2];
+            System.arraycopy(index, 0, newIndex, 0, index.length);
+            index = newIndex;
+        }
+        index[keyframes * 2] = position;
+
+        world.saveState(snapshot);
+        snapshot.write(buffer(snapshot.byteSize()));
+        flush();
+
+        index[keyframes * 2 + 1] = position;
+        keyframes++;
+        segment = new Recording(world.getWidth(), world.getHeight(),
+                world.getSeed());
+    }
+
+    /**
+     * Write the input of the current segment.
+     */
+    private void writeRuns() throws IOException {
+        int runs = segment.runs();
+        // A run takes at most one byte plus a 5 byte varint
+        ByteBuffer out = buffer(4 + runs * 6);
+        out.putInt(runs);
+        for (int r = 0; r < runs; r++) {
+            out.put((byte) segment.runInput(r));
+            int length = segment.runLength(r);
+            while ((length & ~0x7f) != 0) {
+                out.put((byte) ((length & 0x7f) | 0x80));
+                length >>>= 7;
+            }
+            out.put((byte) length);
+        }
+        flush();
+    }
+
+    /**
+     * Returns the write buffer, cleared, with room for at least the given
+     * number of bytes.
+     */
+    private ByteBuffer buffer(int bytes) {
+        if (buffer.capacity() < bytes)
+            buffer = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2));
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Write what has been put into the buffer to the end of the file.
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer);
+    }
+
+    /**
+     * Converts recordings made by Space into seekable recordings.
+     *
+     * @param args  The recording to read, the file to write and optionally
+     *              the number of ticks between keyframes (default 400, i.e.
+     *              every 10 seconds of play)
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: java asteroid.KeyframeRecorder " +
+                    "RECORDING OUTPUT [INTERVAL]");
+            System.exit(2);
+        }
+        try {
+            int interval = args.length == 3 ? Integer.parseInt(args[2]) : 400;
+            write(Recording.read(new File(args[0])), new File(args[1]),
+                    interval);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
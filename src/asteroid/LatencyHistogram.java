@@ -0,0 +1,121 @@
+package asteroid;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram counts durations in nanoseconds in log-linear buckets:
+ * every power of two is split into 16 buckets, so any percentile is accurate
+ * to about 6% over the whole range of a long, in a fixed 8 KB of memory.
+ *
+ * Only one thread may record into a LatencyHistogram, but any thread may read
+ * it at the same time. Recording is a handful of instructions and never
+ * allocates or blocks.
+ *
+ * @author Daniel Ge
+ */
+final class LatencyHistogram {
+    // Values below LINEAR each have their own bucket; above, each power of
+    // two has HALF buckets.
+    private static final int SUB_BITS = 5;
+    private static final int LINEAR = 1 << SUB_BITS, HALF = LINEAR / 2;
+    private static final int BUCKETS = LINEAR + (63 - SUB_BITS) * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Count a duration. Must only be called by one thread.
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        int i = bucket(nanos);
+        // lazySet is enough with a single writer, and much cheaper than an
+        // atomic increment.
+        counts.lazySet(i, counts.get(i) + 1);
+        count.lazySet(count.get() + 1);
+        if (nanos > max.get())
+            max.lazySet(nanos);
+    }
+
+    /**
+     * Returns the number of durations counted.
+     *
+     * @return  The number of durations
+     */
+    long count() {
+        return count.get();
+    }
+
+    /**
+     * Returns the longest duration counted.
+     *
+     * @return  The longest duration in nanoseconds, or 0 if there are none
+     */
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the duration that the given fraction of the durations counted
+     * do not exceed. The result is the upper end of the bucket it falls in.
+     *
+     * @param fraction  From 0.0 to 1.0, e.g. 0.99 for the 99th percentile
+     * @return          The duration in nanoseconds, or 0 if there are none
+     */
+    long percentile(double fraction) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return Math.min(highest(i), max());
+        }
+        return max();
+    }
+
+    /**
+     * Forget every duration counted. Durations recorded at the same time by
+     * the writer may be lost.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        count.set(0);
+        max.set(0);
+    }
+
+    private static int bucket(long value) {
+        if (value < LINEAR)
+            return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BITS + 1;
+        int top = (int) (value >>> shift);  // from HALF to LINEAR - 1
+        return LINEAR + (shift - 1) * HALF + (top - HALF);
+    }
+
+    /**
+     * Returns the highest value that goes into bucket i.
+     */
+    private static long highest(int i) {
+        if (i < LINEAR)
+            return i;
+        int k = i - LINEAR;
+        int shift = k / HALF + 1;
+        long top = k % HALF + HALF;
+        return ((top + 1) << shift) - 1;
+    }
+}
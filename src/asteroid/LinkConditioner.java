@@ -0,0 +1,126 @@
+package asteroid;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * LinkConditioner sends datagrams as if over a worse network than the one
+ * they go over: each datagram is delayed by a latency plus a random jitter
+ * (so they may arrive out of order), and some are dropped. It is meant for
+ * trying out a GameServer and GameClients over loopback.
+ *
+ * Each end of a link conditions what it sends, so the round trip time is the
+ * sum of the latencies of both ends.
+ *
+ * @author Daniel Ge
+ */
+final class LinkConditioner {
+    private final long latency, jitter;
+    private final double loss;
+    private final Random random;
+
+    // Datagrams waiting to be sent, soonest first
+    private final PriorityQueue<Delayed> queue = new PriorityQueue<Delayed>();
+    private long sequence;
+
+    /**
+     * Creates a LinkConditioner that sends every datagram right away.
+     */
+    LinkConditioner() {
+        this(0, 0, 0.0, 0);
+    }
+
+    /**
+     * Creates a new LinkConditioner.
+     *
+     * @param latencyMillis Delay of every datagram in milliseconds
+     * @param jitterMillis  Up to this many more milliseconds of delay, at
+     *                      random
+     * @param loss          Fraction of the datagrams dropped, from 0.0 to 1.0
+     * @param seed          Seed for which datagrams are dropped and delayed
+     */
+    LinkConditioner(int latencyMillis, int jitterMillis, double loss,
+            long seed) {
+        this.latency = latencyMillis * 1000000L;
+        this.jitter = jitterMillis * 1000000L;
+        this.loss = loss;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Send the remaining bytes of a buffer, now or later, or not at all.
+     *
+     * @param channel   The channel to send on
+     * @param data      The datagram. Its bytes are copied if it is delayed.
+     * @param target    Where to send it
+     * @throws IOException  if the datagram cannot be sent
+     */
+    void send(DatagramChannel channel, ByteBuffer data, SocketAddress target)
+            throws IOException {
+        if (loss > 0 && random.nextDouble() < loss) {
+            data.position(data.limit());
+            return;
+        }
+        if (latency == 0 && jitter == 0) {
+            channel.send(data, target);
+            return;
+        }
+
+        long delay = latency;
+        if (jitter > 0)
+            delay += (long) (random.nextDouble() * jitter);
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        queue.add(new Delayed(System.nanoTime() + delay, sequence++, bytes,
+                target));
+    }
+
+    /**
+     * Send every delayed datagram that is due.
+     *
+     * @param channel   The channel to send on
+     * @throws IOException  if a datagram cannot be sent
+     */
+    void flush(DatagramChannel channel) throws IOException {
+        long now = System.nanoTime();
+        while (!queue.isEmpty() && queue.peek().due <= now) {
+            Delayed d = queue.poll();
+            channel.send(ByteBuffer.wrap(d.bytes), d.target);
+        }
+    }
+
+    /**
+     * Returns how long until the next delayed datagram is due.
+     *
+     * @return  The time in nanoseconds, or {@code Long.MAX_VALUE} if there
+     *          are none
+     */
+    long nanosUntilNext() {
+        if (queue.isEmpty())
+            return Long.MAX_VALUE;
+        return Math.max(queue.peek().due - System.nanoTime(), 0);
+    }
+
+    private static final class Delayed implements Comparable<Delayed> {
+        final long due, sequence;
+        final byte[] bytes;
+        final SocketAddress target;
+
+        Delayed(long due, long sequence, byte[] bytes, SocketAddress target) {
+            this.due = due;
+            this.sequence = sequence;
+            this.bytes = bytes;
+            this.target = target;
+        }
+
+        public int compareTo(Delayed o) {
+            if (due != o.due)
+                return due < o.due ? -1 : 1;
+            return sequence < o.sequence ? -1 : sequence == o.sequence ? 0 : 1;
+        }
+    }
+}
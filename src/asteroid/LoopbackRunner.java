@@ -0,0 +1,237 @@
+package asteroid;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LoopbackRunner plays a network game on this machine: a GameServer and a
+ * GameClient per player, or two RollbackPeers, each played by an AimingBot,
+ * over loopback with a simulated latency, jitter and packet loss on every
+ * link. It then reports how each player fared, e.g. how often its
+ * prediction was wrong or how far it had to roll back.
+ *
+ * @author Daniel Ge
+ */
+public final class LoopbackRunner {
+    private static final long INTERVAL_NANOS = World.INTERVAL * 1000000L;
+
+    private LoopbackRunner() {
+    }
+
+    /**
+     * Play one client until the deadline, one tick every World.INTERVAL ms.
+     */
+    private static void play(GameClient client, long deadline)
+            throws IOException {
+        Bot bot = new AimingBot(client.getPlayer());
+        long next = System.nanoTime();
+        while (System.nanoTime() - deadline < 0) {
+            client.tick(bot.nextInput(client.getWorld()));
+            next += INTERVAL_NANOS;
+            long wait = next - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * Play one RollbackPeer until the deadline, one tick every
+     * World.INTERVAL ms.
+     */
+    private static void play(RollbackPeer peer, long deadline)
+            throws IOException {
+        peer.connect(5000);
+        Bot bot = new AimingBot(peer.getPlayer());
+        long next = System.nanoTime();
+        while (System.nanoTime() - deadline < 0) {
+            peer.tick(bot.nextInput(peer.getWorld()));
+            next += INTERVAL_NANOS;
+            long wait = next - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * Run every player on a thread of its own until they are done, and
+     * rethrow the first failure.
+     */
+    private static void runAll(final Object[] players, final long deadline)
+            throws Exception {
+        final IOException[] failure = new IOException[1];
+        Thread[] threads = new Thread[players.length];
+        for (int k = 0; k < players.length; k++) {
+            final Object player = players[k];
+            threads[k] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        if (player instanceof GameClient)
+                            play((GameClient) player, deadline);
+                        else
+                            play((RollbackPeer) player, deadline);
+                    } catch (IOException e) {
+                        synchronized (failure) {
+                            if (failure[0] == null)
+                                failure[0] = e;
+                        }
+                    }
+                }
+            }, "Player-" + k);
+            threads[k].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        if (failure[0] != null)
+            throw failure[0];
+    }
+
+    /**
+     * Play a head-to-head game of two RollbackPeers.
+     */
+    private static void rollback(int seconds, int latency, int jitter,
+            double loss, long seed) throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        DatagramChannel a = RollbackPeer.open(0), b = RollbackPeer.open(0);
+        RollbackPeer[] peers = {
+            new RollbackPeer(a, new InetSocketAddress(loopback,
+                    b.socket().getLocalPort()),
+                    new LinkConditioner(latency, jitter, loss, seed)),
+            new RollbackPeer(b, new InetSocketAddress(loopback,
+                    a.socket().getLocalPort()),
+                    new LinkConditioner(latency, jitter, loss, seed + 1))
+        };
+
+        try {
+            runAll(peers, System.nanoTime() + seconds * 1000000000L);
+        } finally {
+            for (RollbackPeer peer : peers)
+                peer.close();
+        }
+
+        System.out.printf("2 peers, %d ms latency + up to %d ms jitter, " +
+                "%.1f%% loss each way%n", latency, jitter, loss * 100);
+        for (RollbackPeer peer : peers) {
+            RollbackSession session = peer.getSession();
+            World world = peer.getWorld();
+            System.out.printf("player %d: tick %d, level %d, score %d, " +
+                    "%d rollbacks of %.1f ticks on average (at most %d), " +
+                    "%d stalls, in sync through tick %d%n", peer.getPlayer(),
+                    world.getTick(),
+                    world.getLevel(),
+                    world.getSpaceShip(peer.getPlayer()).getScore(),
+                    session.getRollbacks(), (double)
+                    session.getResimulatedTicks() /
+                    Math.max(session.getRollbacks(), 1),
+                    session.getDeepestRollback(), peer.getStalls(),
+                    peer.getCheckedTick());
+        }
+    }
+
+    /**
+     * Runs a game over loopback. Options:
+     *
+     * <pre>
+     *   -mode M        server, or rollback for two RollbackPeers (default
+     *                  server)
+     *   -players N     number of players with a server (default 2)
+     *   -seconds S     how long to play (default 10)
+     *   -latency MS    one-way delay of every datagram (default 50)
+     *   -jitter MS     up to MS milliseconds more delay (default 10)
+     *   -loss PCT      percentage of datagrams dropped (default 5)
+     *   -seed S        seed of the links, and of the game with a server
+     *                  (default 1)
+     * </pre>
+     *
+     * @param args  The options
+     */
+    public static void main(String[] args) throws Exception {
+        int players = 2, seconds = 10, latency = 50, jitter = 10;
+        double loss = 0.05;
+        long seed = 1;
+        boolean rollback = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 == args.length)
+                    throw new IllegalArgumentException(option + " needs a value");
+                String value = args[++i];
+                if (option.equals("-mode")) {
+                    if (!value.equals("server") && !value.equals("rollback"))
+                        throw new IllegalArgumentException("Unknown mode " +
+                                value);
+                    rollback = value.equals("rollback");
+                }
+                else if (option.equals("-players"))
+                    players = Integer.parseInt(value);
+                else if (option.equals("-seconds"))
+                    seconds = Integer.parseInt(value);
+                else if (option.equals("-latency"))
+                    latency = Integer.parseInt(value);
+                else if (option.equals("-jitter"))
+                    jitter = Integer.parseInt(value);
+                else if (option.equals("-loss"))
+                    loss = Double.parseDouble(value) / 100;
+                else if (option.equals("-seed"))
+                    seed = Long.parseLong(value);
+                else
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+            if (players <= 0 || seconds <= 0)
+                throw new IllegalArgumentException(
+                        "-players and -seconds must be positive");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java asteroid.LoopbackRunner " +
+                    "[-mode server|rollback] [-players N] [-seconds S] " +
+                    "[-latency MS] [-jitter MS] [-loss PCT] [-seed S]");
+            System.exit(2);
+        }
+
+        if (rollback) {
+            rollback(seconds, latency, jitter, loss, seed);
+            return;
+        }
+
+        GameServer server = new GameServer(0, players, seed,
+                new LinkConditioner(latency, jitter, loss, seed));
+        Thread serverThread = new Thread(server, "GameServer");
+        serverThread.start();
+
+        InetSocketAddress address = new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), server.getPort());
+        GameClient[] clients = new GameClient[players];
+        for (int k = 0; k < players; k++) {
+            clients[k] = new GameClient(address, new LinkConditioner(latency,
+                    jitter, loss, seed + k + 1));
+            clients[k].join(5000);
+        }
+
+        try {
+            runAll(clients, System.nanoTime() + seconds * 1000000000L);
+        } finally {
+            server.close();
+            serverThread.join();
+        }
+
+        World world = server.getWorld();
+        System.out.printf("%d players, %d ms latency + up to %d ms jitter, " +
+                "%.1f%% loss each way%n", players, latency, jitter, loss * 100);
+        System.out.printf("server: tick %d, level %d%s%n", world.getTick(),
+                world.getLevel(), world.isGameOver() ? ", game over" : "");
+        for (GameClient client : clients) {
+            int p = client.getPlayer();
+            System.out.printf("player %d: score %d, %d states, " +
+                    "%.1f%% mispredicted, round trip %.0f ms, ahead by %d " +
+                    "ticks%n", p, world.getSpaceShip(p).getScore(),
+                    client.getStates(), 100.0 * client.getMispredictions() /
+                    Math.max(client.getStates(), 1),
+                    client.getRoundTripMillis(),
+                    client.getWorld().getTick() - world.getTick());
+            client.close();
+        }
+    }
+}
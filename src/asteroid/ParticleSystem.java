@@ -0,0 +1,219 @@
+package asteroid;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * ParticleSystem shows the debris of GameObjects that are destroyed. The
+ * particles are only for show: they are not GameObjects, nothing collides
+ * with them, and they are not part of the state of the World, so they do not
+ * change how a game plays out.
+ *
+ * Particles are kept in parallel primitive arrays of a fixed capacity, with
+ * positions and velocities in fixed point like the EntityStore. New particles
+ * are put in the slots after the newest ones, wrapping around, so when the
+ * system is full the oldest particles make room. Nothing is allocated once
+ * the ParticleSystem is created (and has drawn its first frame), however many
+ * particles there are.
+ *
+ * Drawing sets the pixels of every particle in an offscreen image, which is
+ * then drawn in one go.
+ *
+ * @author Daniel Ge
+ */
+final class ParticleSystem {
+    // Ticks a particle lasts, give or take a quarter
+    private static final int LIFETIME = 32;
+
+    // Fastest a particle flies off at, in pixels per tick, and how much of
+    // the velocity of what exploded it keeps
+    private static final int SPEED = Fixed.fromDouble(3.0);
+    private static final int INHERIT = Fixed.fromDouble(0.5);
+
+    // The velocity of a particle is multiplied by this after every tick
+    private static final int DRAG = Fixed.fromDouble(0.96);
+
+    private final int capacity;
+    private final int[] x, y;
+    private final int[] velocityX, velocityY;
+    private final int[] age;
+
+    // The slot the next particle goes into, and the number of slots that have
+    // ever been used (the rest need not be looked at).
+    private int next, used;
+    private int live;
+
+    // Particles are scattered by their own generator, so that they do not
+    // use up the random numbers of the World.
+    private int seed = 0x2545f491;
+
+    // Where the particles are drawn, and the pixels set in the last frame
+    private BufferedImage image;
+    private int[] pixels;
+    private final int[] lit;
+    private int litCount;
+
+    /**
+     * Creates a new, empty ParticleSystem.
+     *
+     * @param capacity  The most particles there can be at a time
+     */
+    ParticleSystem(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        x = new int[capacity];
+        y = new int[capacity];
+        velocityX = new int[capacity];
+        velocityY = new int[capacity];
+        age = new int[capacity];
+        lit = new int[capacity];
+    }
+
+    /**
+     * Returns the number of particles that are still flying.
+     *
+     * @return  The number of particles
+     */
+    int size() {
+        return live;
+    }
+
+    /**
+     * Remove every particle.
+     */
+    void clear() {
+        Arrays.fill(age, 0, used, 0);
+        next = used = live = 0;
+    }
+
+    /**
+     * Scatter particles from a point in every direction.
+     *
+     * @param fromX     X-coordinate in fixed point
+     * @param fromY     Y-coordinate in fixed point
+     * @param fromVX    X-velocity in fixed point of what exploded
+     * @param fromVY    Y-velocity in fixed point of what exploded
+     * @param count     Number of particles
+     */
+    void explode(int fromX, int fromY, int fromVX, int fromVY, int count) {
+        int baseX = Fixed.mul(fromVX, INHERIT);
+        int baseY = Fixed.mul(fromVY, INHERIT);
+        for (int n = 0; n < count; n++) {
+            int i = next;
+            next = next + 1 == capacity ? 0 : next + 1;
+            if (i == used)
+                used++;
+            if (age[i] == 0)
+                live++;
+
+            int r = random();
+            int angle = r & (Fixed.ANGLES - 1);
+            int speed = Fixed.mul(SPEED, (r >>> 16) + 1);
+            x[i] = fromX;
+            y[i] = fromY;
+            velocityX[i] = baseX + Fixed.mul(speed, Fixed.sin(angle));
+            velocityY[i] = baseY + Fixed.mul(speed, Fixed.cos(angle));
+            age[i] = LIFETIME - LIFETIME / 4 + (random() >>> 1) %
+                    (LIFETIME / 2);
+        }
+    }
+
+    /**
+     * Returns the next number of a xorshift generator.
+     */
+    private int random() {
+        int s = seed;
+        s ^= s << 13;
+        s ^= s >>> 17;
+        s ^= s << 5;
+        return seed = s;
+    }
+
+    /**
+     * Move every particle one tick on, wrapping around the edges of the
+     * field, and let the oldest ones go out.
+     *
+     * @param width     Width of the field in pixels
+     * @param height    Height of the field in pixels
+     */
+    void update(int width, int height) {
+        int right = Fixed.fromInt(width), bottom = Fixed.fromInt(height);
+        int alive = 0;
+        for (int i = 0; i < used; i++) {
+            if (age[i] == 0)
+                continue;
+            if (--age[i] == 0)
+                continue;
+            alive++;
+
+            int newX = x[i] + velocityX[i];
+            int newY = y[i] + velocityY[i];
+            if (newX >= right)
+                newX -= right;
+            else if (newX < 0)
+                newX += right;
+            if (newY >= bottom)
+                newY -= bottom;
+            else if (newY < 0)
+                newY += bottom;
+            x[i] = newX;
+            y[i] = newY;
+            velocityX[i] = Fixed.mul(velocityX[i], DRAG);
+            velocityY[i] = Fixed.mul(velocityY[i], DRAG);
+        }
+        live = alive;
+    }
+
+    /**
+     * Draw every particle, fading out as it gets older.
+     *
+     * @param g         The Graphics context
+     * @param width     Width of the field in pixels
+     * @param height    Height of the field in pixels
+     * @param alpha     How far between the previous tick (0.0) and the
+     *                  current tick (1.0) to draw
+     */
+    void draw(Graphics g, int width, int height, float alpha) {
+        if (image == null || image.getWidth() != width ||
+                image.getHeight() != height) {
+            image = new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer())
+                    .getData();
+            litCount = 0;
+        }
+        if (live == 0 && litCount == 0)
+            return;
+
+        // Clear what the last frame drew, rather than the whole image
+        for (int n = 0; n < litCount; n++)
+            pixels[lit[n]] = 0;
+        litCount = 0;
+
+        // The particles moved a whole tick ago; draw them part of the way
+        float back = 1.0f - alpha;
+        for (int i = 0; i < used; i++) {
+            if (age[i] == 0)
+                continue;
+            int px = Fixed.toInt(x[i] - (int) (velocityX[i] * back));
+            int py = Fixed.toInt(y[i] - (int) (velocityY[i] * back));
+            if (px < 0)
+                px += width;
+            else if (px >= width)
+                px -= width;
+            if (py < 0)
+                py += height;
+            else if (py >= height)
+                py -= height;
+
+            int shade = Math.min(255, age[i] * 255 / (LIFETIME / 2));
+            int p = py * width + px;
+            pixels[p] = shade << 24 | 0xffffff;
+            lit[litCount++] = p;
+        }
+        g.drawImage(image, 0, 0, null);
+    }
+}
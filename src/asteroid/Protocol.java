@@ -0,0 +1,69 @@
+package asteroid;
+
+/**
+ * The messages a GameServer and its GameClients exchange, and the messages
+ * two RollbackPeers exchange, one per UDP datagram. Every message starts
+ * with its type byte:
+ *
+ * <pre>
+ *   HELLO      client to server, to join the game (sent until welcomed)
+ *     int      MAGIC
+ *   WELCOME    server to client
+ *     byte     the player the client controls
+ *     byte     number of players
+ *     int      width, height
+ *     long     seed
+ *   FULL       server to client, every player is taken
+ *   INPUT      client to server, every tick
+ *     int      sequence number of the newest input, from 1
+ *     byte     count, at most REDUNDANCY
+ *     byte[count]  the newest inputs, oldest first
+ *   STATE      server to client, every tick
+ *     int      sequence number of the last input of the client applied
+ *     ...      the World, as written by WorldSnapshot.write()
+ *   BYE        client to server (or peer to peer), to leave the game
+ *   SYNC       peer to peer, to start a game (sent until answered)
+ *     int      MAGIC
+ *     long     a random number of the sender
+ *     long     the random number of the receiver, or 0 if not known yet
+ *   INPUTS     peer to peer, every tick
+ *     int      number of ticks whose inputs have arrived from the receiver
+ *     int      tick of the first input
+ *     byte     count, at most REDUNDANCY
+ *     byte[count]  inputs of the sender, oldest first
+ *     int      a tick at which the World of the sender is final
+ *     long     the checksum of the World at that tick
+ * </pre>
+ *
+ * Datagrams may be lost, duplicated or reordered. Every INPUT and INPUTS
+ * resends the inputs the other end may not have seen yet, and every STATE
+ * holds the whole World, so no message ever needs to be sent again.
+ *
+ * Peers agree on who is which player, and on the seed of the game, from
+ * their random numbers: the lower number is player 0.
+ *
+ * @author Daniel Ge
+ */
+final class Protocol {
+    static final int PORT = 7654, PEER_PORT = 7655;
+    static final int MAGIC = 0x41535452;
+
+    // Message types
+    static final byte HELLO = 1,
+                      WELCOME = 2,
+                      FULL = 3,
+                      INPUT = 4,
+                      STATE = 5,
+                      BYE = 6,
+                      SYNC = 7,
+                      INPUTS = 8;
+
+    // Largest UDP datagram
+    static final int MAX_DATAGRAM = 65507;
+
+    // Most inputs sent in each INPUT or INPUTS message
+    static final int REDUNDANCY = 16;
+
+    private Protocol() {
+    }
+}
@@ -0,0 +1,274 @@
+package asteroid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A Recording is everything needed to play a game again: the size of the
+ * World, its seed and the input of every tick. Since a World always plays out
+ * the same way for the same seed and input, that is enough to reproduce the
+ * game exactly.
+ *
+ * The input is run-length encoded (players hold keys down for many ticks), so
+ * a Recording takes a few bytes per second of play. The file format is, in
+ * big-endian order:
+ *
+ * <pre>
+ *   int     MAGIC ("AREC")
+ *   byte    VERSION
+ *   int     width
+ *   int     height
+ *   long    seed
+ *   int     number of ticks
+ *   int     number of runs
+ *   runs    each run is the input mask (one byte) followed by the number of
+ *           ticks it lasts (a varint: 7 bits per byte, least significant
+ *           first, high bit set on every byte but the last)
+ * </pre>
+ *
+ * VERSION also changes whenever the game would play out the same input
+ * differently, since a Recording is only good for the game it was made with.
+ *
+ * @author Daniel Ge
+ * @see Replay
+ */
+public final class Recording {
+    static final int MAGIC = 0x41524543;
+    static final int VERSION = 4;
+
+    private final int width, height;
+    private final long seed;
+
+    // Run r is the input runInput[r], held for runLength[r] ticks.
+    private byte[] runInput = new byte[16];
+    private int[] runLength = new int[16];
+    private int runs;
+    private int ticks;
+
+    /**
+     * Creates a new, empty Recording of a game.
+     *
+     * @param width     Width of the World
+     * @param height    Height of the World
+     * @param seed      Seed of the World
+     */
+    public Recording(int width, int height, long seed) {
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a new, empty Recording of a game that starts like the given
+     * World. The World must not have been stepped yet.
+     *
+     * @param world The World that will be recorded
+     * @throws IllegalArgumentException if the World has been stepped already
+     */
+    public Recording(World world) {
+        this(world.getWidth(), world.getHeight(), world.getSeed());
+        if (world.getTick() != 0)
+            throw new IllegalArgumentException("World has been stepped already");
+    }
+
+    /**
+     * Append the input of the next tick.
+     *
+     * @param input The input passed to World.step()
+     */
+    public void add(int input) {
+        addRun(input, 1);
+    }
+
+    /**
+     * Append the same input for the given number of ticks.
+     */
+    private void addRun(int input, int length) {
+        if (runs > 0 && runInput[runs - 1] == (byte) input) {
+            runLength[runs - 1] += length;
+        }
+        else {
+            if (runs == runInput.length) {
+                byte[] newInput = new byte[runs * 2];
+                int[] newLength = new int[runs * 2];
+                System.arraycopy(runInput, 0, newInput, 0, runs);
+                System.arraycopy(runLength, 0, newLength, 0, runs);
+                runInput = newInput;
+                runLength = newLength;
+            }
+            runInput[runs] = (byte) input;
+            runLength[runs] = length;
+            runs++;
+        }
+        ticks += length;
+    }
+
+    /**
+     * Returns the number of ticks recorded.
+     *
+     * @return  The number of ticks recorded
+     */
+    public int length() {
+        return ticks;
+    }
+
+    /**
+     * Returns the seed of the recorded World.
+     *
+     * @return  The seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Creates a World in the state the recorded game started in.
+     *
+     * @return  A new World
+     */
+    public World newWorld() {
+        return new World(width, height, seed);
+    }
+
+    /**
+     * Returns the number of runs of the same input.
+     */
+    int runs() {
+        return runs;
+    }
+
+    /**
+     * Returns the input of run r.
+     */
+    int runInput(int r) {
+        return runInput[r] & 0xff;
+    }
+
+    /**
+     * Returns the number of ticks run r lasts.
+     */
+    int runLength(int r) {
+        return runLength[r];
+    }
+
+    /**
+     * Write the Recording to a stream.
+     *
+     * @param out   The stream to write to. It is not closed.
+     * @throws IOException  if the Recording cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeLong(seed);
+        data.writeInt(ticks);
+        data.writeInt(runs);
+        for (int r = 0; r < runs; r++) {
+            data.writeByte(runInput[r]);
+            writeVarint(data, runLength[r]);
+        }
+        data.flush();
+    }
+
+    /**
+     * Write the Recording to a file.
+     *
+     * @param file  The file to write to. It is replaced if it exists.
+     * @throws IOException  if the Recording cannot be written
+     */
+    public void write(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read a Recording from a stream.
+     *
+     * @param in    The stream to read from. It is not closed.
+     * @return      The Recording
+     * @throws IOException  if the stream cannot be read or does not hold a
+     *                      Recording
+     */
+    public static Recording read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(
+                new BufferedInputStream(in));
+        if (data.readInt() != MAGIC)
+            throw new IOException("Not a recording");
+        int version = data.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported recording version " + version);
+
+        int width = data.readInt(), height = data.readInt();
+        if (!World.isValidSize(width, height))
+            throw new IOException("Corrupt recording");
+        Recording recording = new Recording(width, height, data.readLong());
+        int ticks = data.readInt();
+        int runs = data.readInt();
+        if (ticks < 0 || runs < 0 || runs > ticks)
+            throw new IOException("Corrupt recording");
+
+        for (int r = 0; r < runs; r++) {
+            int input = data.readUnsignedByte();
+            int length = readVarint(data);
+            if (length <= 0 || length > ticks - recording.ticks)
+                throw new IOException("Corrupt recording");
+            recording.addRun(input, length);
+        }
+        if (recording.ticks != ticks)
+            throw new IOException("Corrupt recording");
+        return recording;
+    }
+
+    /**
+     * Read a Recording from a file.
+     *
+     * @param file  The file to read
+     * @return      The Recording
+     * @throws IOException  if the file cannot be read or does not hold a
+     *                      Recording
+     */
+    public static Recording read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value)
+            throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Corrupt recording");
+    }
+}
@@ -0,0 +1,146 @@
+package asteroid;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replay plays a Recording back into a new World, one tick at a time. Space
+ * uses it to show a recorded game in real time; {@link #main} replays
+ * recordings headless, as fast as the CPU allows.
+ *
+ * @author Daniel Ge
+ */
+public final class Replay {
+    private final Recording recording;
+    private final World world;
+
+    // The next tick is the tick-th tick of run number run.
+    private int run, tick;
+
+    /**
+     * Creates a new Replay, starting at the beginning of the Recording.
+     *
+     * @param recording The Recording to play back
+     */
+    public Replay(Recording recording) {
+        this.recording = recording;
+        this.world = recording.newWorld();
+    }
+
+    /**
+     * Returns the World the Recording is played into.
+     *
+     * @return  The World
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Returns whether there are ticks left to play.
+     *
+     * @return  {@code true} if there are ticks left, {@code false} if the
+     *          whole Recording has been played
+     */
+    public boolean hasNext() {
+        return run < recording.runs();
+    }
+
+    /**
+     * Step the World with the input of the next recorded tick.
+     *
+     * @throws IllegalStateException    if there are no ticks left
+     */
+    public void step() {
+        if (!hasNext())
+            throw new IllegalStateException("End of recording");
+
+        world.step(recording.runInput(run));
+        if (++tick == recording.runLength(run)) {
+            run++;
+            tick = 0;
+        }
+    }
+
+    /**
+     * Play the rest of the Recording as fast as possible.
+     */
+    public void finish() {
+        while (run < recording.runs()) {
+            int input = recording.runInput(run);
+            for (int t = tick; t < recording.runLength(run); t++)
+                world.step(input);
+            run++;
+            tick = 0;
+        }
+    }
+
+    /**
+     * Replays each recording given on the command line as fast as possible
+     * and prints how each game ended. A recording that has a ChecksumLog next
+     * to it is checked against it, and the first tick that played out
+     * differently is printed.
+     *
+     * @param args  The recording files
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java asteroid.Replay RECORDING...");
+            System.exit(2);
+        }
+
+        int failed = 0;
+        long start = System.nanoTime();
+        long ticks = 0;
+        for (String arg : args) {
+            Recording recording;
+            try {
+                recording = Recording.read(new File(arg));
+            } catch (IOException e) {
+                System.err.println(arg + ": " + e.getMessage());
+                failed++;
+                continue;
+            }
+
+            File sums = ChecksumLog.fileFor(new File(arg));
+            ChecksumLog expected = null;
+            if (sums.exists()) {
+                try {
+                    expected = ChecksumLog.read(sums);
+                } catch (IOException e) {
+                    System.err.println(sums + ": " + e.getMessage());
+                    failed++;
+                }
+            }
+
+            Replay replay = new Replay(recording);
+            if (expected != null)
+                replay.getWorld().setChecksumLog(new ChecksumLog());
+            replay.finish();
+            World world = replay.getWorld();
+            ticks += world.getTick();
+
+            String check = "";
+            if (expected != null) {
+                long tick = expected.firstDivergence(world.getChecksumLog());
+                if (tick >= 0) {
+                    check = ", differs from the recorded game from tick " +
+                            tick;
+                    failed++;
+                }
+                else {
+                    check = ", checksums match";
+                }
+            }
+            System.out.println(arg + ": " + world.getTick() + " ticks, score " +
+                    world.getSpaceShip().getScore() + ", level " +
+                    world.getLevel() +
+                    (world.isGameOver() ? ", game over" : "") + check);
+        }
+
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println(ticks + " ticks replayed in " + millis + " ms");
+        if (failed > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,401 @@
+package asteroid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketTimeoutException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * RollbackPeer plays a head-to-head game against one other RollbackPeer over
+ * UDP, with no server: each runs the whole World in a RollbackSession, and
+ * the two only send each other their inputs. A RollbackPeer listens on a
+ * port of its own and sends to the port of the other.
+ *
+ * Both peers also send the checksum of the World at the newest tick that is
+ * final for them, so that a game that has gone out of sync (which should
+ * never happen) is noticed.
+ *
+ * A RollbackPeer is not thread-safe; it is meant to be ticked by the thread
+ * that plays the game (e.g. the loop of Space). Only {@link #cancel} may be
+ * called from another thread.
+ *
+ * @author Daniel Ge
+ * @see Protocol
+ */
+public final class RollbackPeer implements Closeable {
+    private static final int WIDTH = 640, HEIGHT = 480, PLAYERS = 2;
+
+    // How often to say SYNC while connecting
+    private static final int SYNC_INTERVAL = 200;
+
+    // The other peer is gone once it has not been heard from for this long
+    private static final long TIMEOUT_NANOS = 5000 * 1000000L;
+
+    private final InetSocketAddress remote;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final LinkConditioner link;
+
+    private long nonce = WorldRandom.newSeed(), remoteNonce;
+    private boolean synced, left;
+    private RollbackSession session;
+    private long lastHeard;
+
+    // Set from another thread to stop connect() waiting
+    private volatile boolean cancelled;
+
+    // Number of ticks whose inputs the other peer has from this one
+    private long remoteAck;
+    private long stalls;
+
+    // The checksum of the other peer's World at a tick this one has not
+    // settled yet (or -1 for none), the newest tick both agree on, and the
+    // tick at which they did not, if any.
+    private long remoteTick = -1, remoteSum;
+    private long checkedTick = -1, desyncTick = -1;
+
+    // Reused for every datagram
+    private final ByteBuffer in = ByteBuffer.allocate(64);
+    private final ByteBuffer out = ByteBuffer.allocate(64);
+
+    /**
+     * Creates a new RollbackPeer. It does not start a game until
+     * {@link #connect} is called.
+     *
+     * @param port      The UDP port to listen on
+     * @param remote    The address of the other peer
+     * @throws IOException  if the port cannot be opened
+     */
+    public RollbackPeer(int port, InetSocketAddress remote)
+            throws IOException {
+        this(open(port), remote, new LinkConditioner());
+    }
+
+    /**
+     * Creates a new RollbackPeer on a bound channel that sends through a
+     * LinkConditioner. The channel is closed if this fails.
+     */
+    RollbackPeer(DatagramChannel channel, InetSocketAddress remote,
+            LinkConditioner link) throws IOException {
+        this.remote = remote;
+        this.link = link;
+        this.channel = channel;
+        try {
+            channel.configureBlocking(false);
+            channel.connect(remote);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a new DatagramChannel bound to a port.
+     *
+     * @param port  The port, or 0 for any free port
+     */
+    static DatagramChannel open(int port) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.socket().bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Start a game with the other peer, waiting until it answers.
+     *
+     * @param timeoutMillis How long to wait for an answer
+     * @throws SocketTimeoutException   if the other peer does not answer in
+     *                                  time
+     * @throws InterruptedIOException   if {@link #cancel} is called first
+     * @throws IOException              on other I/O errors
+     */
+    public void connect(int timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+        long nextSync = System.nanoTime();
+        while (session == null) {
+            if (cancelled)
+                throw new InterruptedIOException("Cancelled");
+            long now = System.nanoTime();
+            if (now - deadline >= 0)
+                throw new SocketTimeoutException("No answer from " + remote);
+            if (now - nextSync >= 0) {
+                sync();
+                nextSync = now + SYNC_INTERVAL * 1000000L;
+            }
+
+            long wait = Math.min(Math.min(nextSync, deadline) - now,
+                    link.nanosUntilNext());
+            selector.select(Math.max(wait / 1000000, 1));
+            selector.selectedKeys().clear();
+            receive();
+            link.flush(channel);
+        }
+    }
+
+    /**
+     * Stop {@link #connect} waiting for the other peer. Can be called from
+     * any thread, and does nothing once connect() has returned.
+     */
+    public void cancel() {
+        cancelled = true;
+        selector.wakeup();
+    }
+
+    private void sync() throws IOException {
+        out.clear();
+        out.put(Protocol.SYNC);
+        out.putInt(Protocol.MAGIC);
+        out.putLong(nonce);
+        out.putLong(remoteNonce);
+        out.flip();
+        link.send(channel, out, remote);
+    }
+
+    /**
+     * Take in the inputs the other peer has sent, step the World one tick
+     * further with the input of this one (unless it is too far ahead of the
+     * other peer), and send the input on.
+     *
+     * @param input The keys held down during this tick
+     * @return      {@code false} if the World had to wait for the other
+     *              peer, and the input was dropped
+     * @throws IOException  if the other peer has gone, or on I/O errors
+     */
+    public boolean tick(int input) throws IOException {
+        if (session == null)
+            throw new IllegalStateException("Not in a game");
+        receive();
+        link.flush(channel);
+        if (left)
+            throw new IOException(remote + " has left the game");
+        if (System.nanoTime() - lastHeard > TIMEOUT_NANOS)
+            throw new IOException("Lost " + remote);
+        check();
+        if (desyncTick >= 0)
+            throw new IOException("Out of sync with " + remote +
+                    " at tick " + desyncTick);
+
+        boolean advanced = session.canAdvance();
+        if (advanced)
+            session.advance(input);
+        else
+            stalls++;
+
+        // Every input the other peer may not have yet, as far as they fit
+        long now = session.getWorld().getTick();
+        int count = (int) Math.min(now - remoteAck, Protocol.REDUNDANCY);
+        out.clear();
+        out.put(Protocol.INPUTS);
+        out.putInt((int) session.getConfirmedTick(1 - session.getPlayer()));
+        out.putInt((int) (now - count));
+        out.put((byte) count);
+        for (long t = now - count; t < now; t++)
+            out.put((byte) session.getInput(session.getPlayer(), t));
+        long settled = session.getSettledTick();
+        out.putInt((int) settled);
+        out.putLong(session.getWorld().getChecksumLog().get(settled));
+        out.flip();
+        link.send(channel, out, remote);
+        return advanced;
+    }
+
+    /**
+     * Handle every datagram that has arrived.
+     */
+    private void receive() throws IOException {
+        while (true) {
+            in.clear();
+            try {
+                if (channel.receive(in) == null)
+                    return;
+            } catch (PortUnreachableException e) {
+                // The other peer is not listening (yet)
+                return;
+            }
+            in.flip();
+            lastHeard = System.nanoTime();
+            try {
+                switch (in.get()) {
+                    case Protocol.SYNC:
+                        synchronize();
+                        break;
+                    case Protocol.INPUTS:
+                        // Only sent once the other peer is in the game
+                        synced = true;
+                        start();
+                        if (session != null)
+                            inputs();
+                        break;
+                    case Protocol.BYE:
+                        left = session != null;
+                        break;
+                    default:
+                        break;
+                }
+            } catch (BufferUnderflowException e) {
+                // A truncated datagram, which is ignored like a lost one
+            }
+        }
+    }
+
+    private void synchronize() throws IOException {
+        if (in.getInt() != Protocol.MAGIC)
+            return;
+        long theirs = in.getLong(), echo = in.getLong();
+        if (theirs == 0)
+            return;
+        if (session == null && theirs == nonce) {
+            // Both picked the same number; pick again
+            nonce = WorldRandom.newSeed();
+            return;
+        }
+        boolean learned = remoteNonce == 0;
+        if (learned)
+            remoteNonce = theirs;
+        else if (theirs != remoteNonce)
+            return;
+        if (echo == nonce)
+            synced = true;
+        start();
+        // Answer if the other peer lacks a number: either it does not have
+        // this one, or it does not know its own has arrived.
+        if (echo != nonce || learned)
+            sync();
+    }
+
+    /**
+     * Start the game once both peers know each other's number.
+     */
+    private void start() {
+        if (session != null || !synced || remoteNonce == 0)
+            return;
+        World world = new World(WIDTH, HEIGHT, nonce ^ remoteNonce, PLAYERS);
+        world.setChecksumLog(new ChecksumLog());
+        session = new RollbackSession(world, nonce < remoteNonce ? 0 : 1);
+    }
+
+    private void inputs() {
+        long ack = in.getInt() & 0xffffffffL;
+        long first = in.getInt() & 0xffffffffL;
+        int count = in.get();
+        if (count < 0 || count > Protocol.REDUNDANCY)
+            return;
+        remoteAck = Math.min(Math.max(remoteAck, ack),
+                session.getWorld().getTick());
+        int other = 1 - session.getPlayer();
+        for (int k = 0; k < count; k++)
+            session.addInput(other, first + k, in.get());
+
+        // Keep the checksum until this peer has settled its tick as well
+        long tick = in.getInt() & 0xffffffffL;
+        long sum = in.getLong();
+        if (remoteTick < 0 && tick > checkedTick) {
+            remoteTick = tick;
+            remoteSum = sum;
+        }
+    }
+
+    /**
+     * Compare the checksum of the other peer with this one, once this peer
+     * has settled the tick of it.
+     */
+    private void check() {
+        if (remoteTick < 0 || remoteTick > session.getSettledTick())
+            return;
+        ChecksumLog log = session.getWorld().getChecksumLog();
+        if (log.contains(remoteTick)) {
+            if (log.get(remoteTick) != remoteSum)
+                desyncTick = remoteTick;
+            else
+                checkedTick = remoteTick;
+        }
+        remoteTick = -1;
+    }
+
+    /**
+     * Returns the World of the game. It is the same World object for the
+     * whole game.
+     *
+     * @return  The World, or {@code null} before connecting
+     */
+    public World getWorld() {
+        return session == null ? null : session.getWorld();
+    }
+
+    /**
+     * Returns the RollbackSession of the game.
+     *
+     * @return  The RollbackSession, or {@code null} before connecting
+     */
+    public RollbackSession getSession() {
+        return session;
+    }
+
+    /**
+     * Returns the player whose SpaceShip this peer controls.
+     *
+     * @return  The player, or -1 before connecting
+     */
+    public int getPlayer() {
+        return session == null ? -1 : session.getPlayer();
+    }
+
+    /**
+     * Returns how often the World had to wait for the other peer.
+     *
+     * @return  The number of ticks dropped
+     */
+    public long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * Returns the newest tick at which the World of both peers was found to
+     * be the same.
+     *
+     * @return  The tick, or -1 if none has been checked yet
+     */
+    public long getCheckedTick() {
+        return checkedTick;
+    }
+
+    /**
+     * Returns the port this peer listens on.
+     *
+     * @return  The UDP port
+     */
+    public int getPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    /**
+     * Leave the game and close the socket.
+     */
+    public void close() throws IOException {
+        try {
+            if (session != null) {
+                out.clear();
+                out.put(Protocol.BYE);
+                out.flip();
+                channel.send(out, remote);
+            }
+        } finally {
+            selector.close();
+            channel.close();
+        }
+    }
+}
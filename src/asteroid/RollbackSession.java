@@ -0,0 +1,275 @@
+package asteroid;
+
+import java.util.Arrays;
+
+/**
+ * RollbackSession runs a World whose players are on different machines, with
+ * nothing but their inputs going between them. Every machine steps its own
+ * copy of the World as soon as its own player's input is in, and predicts
+ * that the other players keep holding down whatever they held down last.
+ * When the actual input of another player arrives and differs from what was
+ * predicted, the World is rolled back to the tick of that input and all the
+ * ticks since are simulated again, within the same frame.
+ *
+ * The World is saved at the start of every tick, so a rollback is one
+ * restoreState() and a few step()s. The World never gets more than
+ * MAX_ROLLBACK ticks ahead of the inputs it has of every player; until they
+ * arrive, {@link #canAdvance} is {@code false} and the game stalls.
+ *
+ * How the inputs get from one machine to another is up to the caller (see
+ * RollbackPeer). A RollbackSession is not thread-safe.
+ *
+ * @author Daniel Ge
+ */
+public final class RollbackSession {
+    /**
+     * The most ticks the World is simulated ahead of the inputs it has, and
+     * so the most ticks simulated again in a rollback.
+     */
+    public static final int MAX_ROLLBACK = 8;
+
+    // Saved states and inputs are kept by tick modulo WINDOW, which must be
+    // more than twice MAX_ROLLBACK to also hold the inputs of peers that are
+    // ahead.
+    static final int WINDOW = 32, WINDOW_MASK = WINDOW - 1;
+
+    private final World world;
+    private final int players, player;
+
+    // The World at the start of each tick
+    private final WorldSnapshot[] states = new WorldSnapshot[WINDOW];
+
+    // The input of each player in each tick, at [slot * players + player],
+    // and the tick it is known to be the input of; otherwise it is a
+    // prediction (or not there yet).
+    private final int[] inputs;
+    private final long[] known;
+
+    // Per player, the first tick whose input is not known yet
+    private final long[] confirmed;
+
+    // The first tick to simulate again, or -1 for none
+    private long rollbackFrom = -1;
+
+    private final int[] step;
+    private long rollbacks, resimulated;
+    private int deepest;
+
+    /**
+     * Creates a new RollbackSession for a World that has not been stepped
+     * yet, which every player must start from.
+     *
+     * @param world     The World, the same on every machine
+     * @param player    The player on this machine
+     * @throws IllegalArgumentException if the player is not in the World, or
+     *                                  the World has been stepped already
+     */
+    public RollbackSession(World world, int player) {
+        if (player < 0 || player >= world.getPlayers())
+            throw new IllegalArgumentException("No player " + player);
+        if (world.getTick() != 0)
+            throw new IllegalArgumentException("World has been stepped");
+        this.world = world;
+        this.player = player;
+        players = world.getPlayers();
+        inputs = new int[WINDOW * players];
+        known = new long[WINDOW * players];
+        Arrays.fill(known, -1);
+        confirmed = new long[players];
+        step = new int[players];
+        for (int t = 0; t < WINDOW; t++)
+            states[t] = new WorldSnapshot();
+    }
+
+    /**
+     * Determines whether the World may be stepped, i.e. whether it is less
+     * than MAX_ROLLBACK ticks ahead of the inputs of every player.
+     *
+     * @return  {@code true} if {@link #advance} may be called
+     */
+    public boolean canAdvance() {
+        return world.getTick() < getConfirmedTick() + MAX_ROLLBACK;
+    }
+
+    /**
+     * Roll back if an input has turned out to be mispredicted, and then step
+     * the World one tick further with the input of the player on this
+     * machine.
+     *
+     * @param input The keys held down during this tick
+     * @return      The tick the input is for, to send to the other players
+     * @throws IllegalStateException    if {@link #canAdvance} is
+     *                                  {@code false}
+     */
+    public long advance(int input) {
+        if (!canAdvance())
+            throw new IllegalStateException("Too far ahead of the inputs");
+        rollBack();
+        long t = world.getTick();
+        int slot = (int) (t & WINDOW_MASK) * players + player;
+        inputs[slot] = input;
+        known[slot] = t;
+        confirmed[player] = t + 1;
+        simulate(t);
+        return t;
+    }
+
+    /**
+     * The input of another player has arrived. It may arrive more than once,
+     * out of order, or ahead of the World; inputs that are too far ahead are
+     * ignored, so they must be sent again.
+     *
+     * @param p     The player
+     * @param tick  The tick the input is for
+     * @param input The keys the player held down in that tick
+     */
+    public void addInput(int p, long tick, int input) {
+        if (p < 0 || p >= players || p == player)
+            throw new IllegalArgumentException("Not another player: " + p);
+        if (tick < confirmed[p] || tick >= getConfirmedTick() + WINDOW)
+            return;
+        int slot = (int) (tick & WINDOW_MASK) * players + p;
+        if (known[slot] == tick)
+            return;
+
+        // Was the tick simulated with a different prediction?
+        if (tick < world.getTick() && inputs[slot] != input &&
+                (rollbackFrom < 0 || tick < rollbackFrom))
+            rollbackFrom = tick;
+        inputs[slot] = input;
+        known[slot] = tick;
+        while (known[(int) (confirmed[p] & WINDOW_MASK) * players + p] ==
+                confirmed[p])
+            confirmed[p]++;
+    }
+
+    /**
+     * Put the World back to the tick of the oldest mispredicted input, and
+     * simulate it up to the present again.
+     */
+    private void rollBack() {
+        if (rollbackFrom < 0)
+            return;
+        long now = world.getTick();
+        world.restoreState(states[(int) (rollbackFrom & WINDOW_MASK)]);
+        for (long t = rollbackFrom; t < now; t++)
+            simulate(t);
+        rollbacks++;
+        resimulated += now - rollbackFrom;
+        deepest = Math.max(deepest, (int) (now - rollbackFrom));
+        rollbackFrom = -1;
+    }
+
+    /**
+     * Save the World and step it through the given tick, which must be its
+     * current one, predicting every input that is not known.
+     */
+    private void simulate(long t) {
+        world.saveState(states[(int) (t & WINDOW_MASK)]);
+        int base = (int) (t & WINDOW_MASK) * players;
+        int previous = (int) ((t - 1) & WINDOW_MASK) * players;
+        for (int p = 0; p < players; p++) {
+            if (known[base + p] != t)
+                inputs[base + p] = t == 0 ? 0 : inputs[previous + p];
+            step[p] = inputs[base + p];
+        }
+        world.step(step);
+    }
+
+    /**
+     * Returns the input of a player in a recent tick, as known or as
+     * predicted.
+     *
+     * @param p     The player
+     * @param tick  The tick, at most WINDOW ticks before the current one
+     * @return      The keys the player held down
+     * @throws IllegalArgumentException if the tick is not a recent one
+     */
+    public int getInput(int p, long tick) {
+        if (tick < 0 || tick >= world.getTick() ||
+                tick <= world.getTick() - WINDOW)
+            throw new IllegalArgumentException("Not a recent tick: " + tick);
+        return inputs[(int) (tick & WINDOW_MASK) * players + p];
+    }
+
+    /**
+     * Returns the first tick whose input of some player is not known yet.
+     * Every tick before it is final, on every machine.
+     *
+     * @return  The tick
+     */
+    public long getConfirmedTick() {
+        long c = confirmed[0];
+        for (int p = 1; p < players; p++)
+            c = Math.min(c, confirmed[p]);
+        return c;
+    }
+
+    /**
+     * Returns the newest tick at which the World is final: every input
+     * before it is known, and no rollback is waiting to apply one. The World
+     * is then the same at this tick on every machine, which the checksums
+     * (see World#setChecksumLog) can confirm.
+     *
+     * @return  The tick
+     */
+    public long getSettledTick() {
+        long c = getConfirmedTick();
+        return rollbackFrom >= 0 ? Math.min(c, rollbackFrom) : c;
+    }
+
+    /**
+     * Returns the first tick whose input of a player is not known yet.
+     *
+     * @param p The player
+     * @return  The tick
+     */
+    public long getConfirmedTick(int p) {
+        return confirmed[p];
+    }
+
+    /**
+     * Returns the World. It is the same World object for the whole session.
+     *
+     * @return  The World
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Returns the player on this machine.
+     *
+     * @return  The player
+     */
+    public int getPlayer() {
+        return player;
+    }
+
+    /**
+     * Returns how often the World was rolled back.
+     *
+     * @return  The number of rollbacks
+     */
+    public long getRollbacks() {
+        return rollbacks;
+    }
+
+    /**
+     * Returns how many ticks were simulated again in all rollbacks.
+     *
+     * @return  The number of ticks
+     */
+    public long getResimulatedTicks() {
+        return resimulated;
+    }
+
+    /**
+     * Returns the most ticks simulated again in one rollback.
+     *
+     * @return  The number of ticks
+     */
+    public int getDeepestRollback() {
+        return deepest;
+    }
+}
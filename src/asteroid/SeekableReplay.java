@@ -0,0 +1,220 @@
+package asteroid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * SeekableReplay plays back a file written by KeyframeRecorder. The file is
+ * memory-mapped, and jumping to a tick only restores the keyframe before it
+ * and simulates the few ticks in between, so seeking anywhere in a long game
+ * takes about as long as simulating one keyframe interval.
+ *
+ * @author Daniel Ge
+ * @see KeyframeRecorder
+ */
+public final class SeekableReplay {
+    private final ByteBuffer data;
+    private final int interval;
+    private final int ticks;
+    private final int keyframes;
+    private final int indexOffset;
+
+    private final World world;
+    private final WorldSnapshot snapshot = new WorldSnapshot();
+
+    // The input of the current segment, one entry per tick
+    private int segment = -1;
+    private final int[] inputs;
+    private int segmentLength;
+
+    /**
+     * Open a seekable recording. The World starts at tick 0.
+     *
+     * @param file  The file written by KeyframeRecorder
+     * @throws IOException  if the file cannot be read or is not a seekable
+     *                      recording
+     */
+    public SeekableReplay(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Recording is too big");
+            // The mapping stays valid after the file is closed.
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        } finally {
+            raf.close();
+        }
+
+        try {
+            if (data.getInt(0) != KeyframeRecorder.MAGIC ||
+                    data.getInt(data.limit() - 4) != KeyframeRecorder.MAGIC)
+                throw new IOException("Not a seekable recording");
+            int version = data.get(4);
+            if (version != KeyframeRecorder.VERSION)
+                throw new IOException("Unsupported recording version " +
+                        version);
+
+            int width = data.getInt(5);
+            int height = data.getInt(9);
+            long seed = data.getLong(13);
+            interval = data.getInt(21);
+
+            int footer = data.limit() - KeyframeRecorder.FOOTER_BYTES;
+            ticks = data.getInt(footer);
+            long index = data.getLong(footer + 4);
+            if (!World.isValidSize(width, height) || interval <= 0 ||
+                    ticks < 0 || index < 0 || index > footer)
+                throw new IOException("Corrupt recording");
+            indexOffset = (int) index;
+            keyframes = data.getInt(indexOffset);
+            int expected = ticks == 0 ? 1 : (ticks + interval - 1) / interval;
+            if (keyframes != expected)
+                throw new IOException("Corrupt recording");
+
+            world = new World(width, height, seed);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt recording");
+        }
+        inputs = new int[interval];
+        try {
+            seek(0);
+        } catch (IllegalStateException e) {
+            throw new IOException("Corrupt recording");
+        }
+    }
+
+    /**
+     * Returns the number of ticks recorded.
+     *
+     * @return  The number of ticks recorded
+     */
+    public int length() {
+        return ticks;
+    }
+
+    /**
+     * Returns the World the recording is played into.
+     *
+     * @return  The World
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Returns whether there are ticks left to play.
+     *
+     * @return  {@code true} if there are ticks left, {@code false} if the
+     *          World is at the end of the recording
+     */
+    public boolean hasNext() {
+        return world.getTick() < ticks;
+    }
+
+    /**
+     * Step the World with the input of the next recorded tick.
+     *
+     * @throws IllegalStateException    if there are no ticks left, or the
+     *                                  recording is corrupt
+     */
+    public void step() {
+        if (!hasNext())
+            throw new IllegalStateException("End of recording");
+
+        int tick = (int) world.getTick();
+        if (tick / interval != segment)
+            loadInputs(tick / interval);
+        int i = tick - segment * interval;
+        if (i < 0 || i >= segmentLength)
+            throw new IllegalStateException("Corrupt recording");
+        world.step(inputs[i]);
+    }
+
+    /**
+     * Put the World in the state it was in at the start of the given tick,
+     * i.e. after that many steps.
+     *
+     * @param tick  The tick to go to, from 0 to {@link #length()}
+     * @throws IndexOutOfBoundsException    if the tick is out of range
+     * @throws IllegalStateException        if the recording is corrupt
+     */
+    public void seek(int tick) {
+        if (tick < 0 || tick > ticks)
+            throw new IndexOutOfBoundsException("tick " + tick);
+
+        // Simulate forward from where we are if that is no further than from
+        // the keyframe.
+        int k = Math.min(tick / interval, keyframes - 1);
+        long now = world.getTick();
+        if (segment == -1 || now > tick || now < (long) k * interval) {
+            ByteBuffer in = data.duplicate();
+            in.position(offset(k, 0));
+            try {
+                snapshot.read(in);
+                // Keyframe k must be of the start of its segment
+                if (snapshot.getTick() != (long) k * interval)
+                    throw new IllegalStateException("Corrupt recording");
+                world.restoreState(snapshot);
+            } catch (BufferUnderflowException e) {
+                throw new IllegalStateException("Corrupt recording");
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Corrupt recording");
+            }
+        }
+        while (world.getTick() < tick)
+            step();
+    }
+
+    /**
+     * Decode the input of segment k.
+     */
+    private void loadInputs(int k) {
+        ByteBuffer in = data.duplicate();
+        in.position(offset(k, 1));
+        int n = 0;
+        try {
+            int runs = in.getInt();
+            for (int r = 0; r < runs; r++) {
+                int input = in.get() & 0xff;
+                int length = 0;
+                for (int shift = 0; ; shift += 7) {
+                    int b = in.get();
+                    length |= (b & 0x7f) << shift;
+                    if ((b & 0x80) == 0)
+                        break;
+                }
+                if (length < 0 || length > interval - n)
+                    throw new IllegalStateException("Corrupt recording");
+                for (int t = 0; t < length; t++)
+                    inputs[n++] = input;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("Corrupt recording");
+        }
+        segment = k;
+        segmentLength = n;
+    }
+
+    /**
+     * Returns the offset of keyframe k (part 0) or the input after it
+     * (part 1).
+     */
+    private int offset(int k, int part) {
+        long offset;
+        try {
+            offset = data.getLong(indexOffset + 4 + (k * 2 + part) * 8);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalStateException("Corrupt recording");
+        }
+        // Anything past the index would not be a position in the buffer
+        if (offset < 0 || offset > indexOffset)
+            throw new IllegalStateException("Corrupt recording");
+        return (int) offset;
+    }
+}
@@ -0,0 +1,114 @@
+package asteroid;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.image.BufferedImage;
+
+/**
+ * ShipSprites holds an image of the SpaceShip for every heading it can face,
+ * with and without its thrust flame, so that drawing the SpaceShip is a single
+ * image copy instead of building and stroking a rotated path every frame.
+ *
+ * The images are rendered the first time they are needed for a
+ * GraphicsConfiguration, and again only if the SpaceShip is drawn somewhere
+ * with a different one.
+ *
+ * @author Daniel Ge
+ */
+final class ShipSprites {
+    // Each sprite is SIZE x SIZE pixels, with the center of the SpaceShip at
+    // (CENTER, CENTER). Big enough for the SpaceShip and flame at any angle.
+    static final int SIZE = 40, CENTER = SIZE / 2;
+
+    private GraphicsConfiguration config;
+    private BufferedImage[] ship, thrust;
+
+    /**
+     * Returns the sprite for the given heading.
+     *
+     * @param gc        The GraphicsConfiguration the sprite will be drawn to
+     * @param heading   The heading of the SpaceShip, from 0 to
+     *                  {@code SpaceShip.HEADINGS - 1}
+     * @param thrusting {@code true} for the sprite with the thrust flame
+     * @return          The sprite
+     * @see SpaceShip#getHeading
+     */
+    synchronized BufferedImage get(GraphicsConfiguration gc, int heading,
+            boolean thrusting) {
+        if (ship == null || gc != config) {
+            config = gc;
+            ship = new BufferedImage[SpaceShip.HEADINGS];
+            thrust = new BufferedImage[SpaceShip.HEADINGS];
+            for (int i = 0; i < SpaceShip.HEADINGS; i++) {
+                ship[i] = render(gc, i, false);
+                thrust[i] = render(gc, i, true);
+            }
+        }
+        return thrusting ? thrust[heading] : ship[heading];
+    }
+
+    /**
+     * Draw the sprite for the given heading centered on (x, y).
+     *
+     * @param g         The Graphics context
+     * @param heading   The heading of the SpaceShip
+     * @param thrusting {@code true} for the sprite with the thrust flame
+     * @param x         X-coordinate of the center of the SpaceShip
+     * @param y         Y-coordinate of the center of the SpaceShip
+     */
+    void draw(Graphics g, int heading, boolean thrusting, int x, int y) {
+        GraphicsConfiguration gc = ((Graphics2D) g).getDeviceConfiguration();
+        g.drawImage(get(gc, heading, thrusting), x - CENTER, y - CENTER, null);
+    }
+
+    /**
+     * Render the SpaceShip facing the given heading.
+     */
+    private static BufferedImage render(GraphicsConfiguration gc, int heading,
+            boolean thrusting) {
+        BufferedImage image = gc == null
+                ? new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB)
+                : gc.createCompatibleImage(SIZE, SIZE, Transparency.BITMASK);
+
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.setColor(Color.white);
+            g2.setTransform(AffineTransform.getRotateInstance(
+                    SpaceShip.headingAngle(heading), CENTER, CENTER));
+            g2.draw(shape(CENTER, CENTER, thrusting));
+        } finally {
+            g2.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Returns the outline of the SpaceShip facing down (theta = 0) around
+     * (x, y).
+     */
+    private static GeneralPath shape(int x, int y, boolean thrusting) {
+        int xPoints[] = {x-7, x, x+8};
+        int yPoints[] = {y-12, y+11, y-12};
+        GeneralPath shipShape = new GeneralPath(GeneralPath.WIND_EVEN_ODD);
+
+        shipShape.moveTo(xPoints[0], yPoints[0]);
+        for (int i = 0; i < xPoints.length; i++) {
+            shipShape.lineTo(xPoints[i], yPoints[i]);
+        }
+        shipShape.moveTo(x-5, y-7);
+        shipShape.lineTo(x+6, y-7);
+
+        // The flame comes out of the back of the SpaceShip
+        if (thrusting) {
+            shipShape.moveTo(x-3, y-12);
+            shipShape.lineTo(x, y-18);
+            shipShape.lineTo(x+3, y-12);
+        }
+        return shipShape;
+    }
+}
@@ -0,0 +1,569 @@
+package asteroid;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SnapshotCodec sends the state of a World to remote viewers in as few bytes
+ * as it can. Orientations are quantized, every value is bit-packed, and each
+ * frame is encoded against a baseline: an earlier frame the receiver has
+ * acknowledged. Positions and velocities are sent in the fixed point the
+ * World moves GameObjects in, so the receiver predicts their moves exactly,
+ * and a GameObject that moved on as the baseline predicts (which is what an
+ * Asteroid does between collisions) takes a single bit.
+ *
+ * The state a viewer gets is only good for drawing: it lacks what is needed
+ * to simulate the World exactly, e.g. the random state, the timers and the
+ * exact orientations. GameClients that predict the World get the whole
+ * WorldSnapshot instead.
+ *
+ * An Encoder and a Decoder make a pair, one at each end of a connection.
+ * Neither allocates per GameObject once they have grown to the size of the
+ * World.
+ *
+ * @author Daniel Ge
+ */
+public final class SnapshotCodec {
+    // Frames kept as baselines, i.e. how old the baseline may be in ticks
+    private static final int HISTORY = 32, HISTORY_MASK = HISTORY - 1;
+
+    // Orientations are sent in 1/THETA_SCALE of a turn
+    private static final double THETA_SCALE = 65536 / (2 * Math.PI);
+
+    // Bits of the flags of each GameObject and SpaceShip
+    private static final int DESTROYED = 1, FRIENDLY = 2, HYPERSPACE = 4,
+                             THRUSTING = 8;
+    private static final int ENTITY_FLAG_BITS = 3, SHIP_FLAG_BITS = 4;
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     * Returns an upper bound of the bytes a frame of the snapshot takes.
+     *
+     * @param s The snapshot
+     * @return  The most bytes {@link Encoder#encode} writes for it
+     */
+    public static int maxBytes(WorldSnapshot s) {
+        // Header, then per SpaceShip and per GameObject in the worst case
+        int bits = 64 + 8 + 7 + 2 * 16 + 16 + 1 + 32 +
+                s.players * (1 + 32 + SHIP_FLAG_BITS) +
+                s.size * (2 + 2 + 3 * 16 + ENTITY_FLAG_BITS + 4 * 32 + 16);
+        return (bits + 7) / 8;
+    }
+
+    /**
+     * The quantized state of a World at one tick, as sent.
+     */
+    private static final class Frame {
+        long tick = -1;
+        int width, height, level, players, size;
+        boolean gameOver;
+
+        int[] score = new int[0];
+        int[] shipFlags = new int[0];
+
+        byte[] kind = new byte[0];
+        int[] entityWidth = new int[0], entityHeight = new int[0];
+        int[] owner = new int[0], flags = new int[0];
+        int[] x = new int[0], y = new int[0];
+        int[] velocityX = new int[0], velocityY = new int[0];
+        int[] theta = new int[0];
+
+        void ensurePlayers(int capacity) {
+            if (score.length < capacity) {
+                score = new int[capacity];
+                shipFlags = new int[capacity];
+            }
+        }
+
+        void ensureCapacity(int capacity) {
+            if (kind.length >= capacity)
+                return;
+            capacity = Math.max(capacity, kind.length * 3 / 2);
+            kind = new byte[capacity];
+            entityWidth = new int[capacity];
+            entityHeight = new int[capacity];
+            owner = new int[capacity];
+            flags = new int[capacity];
+            x = new int[capacity];
+            y = new int[capacity];
+            velocityX = new int[capacity];
+            velocityY = new int[capacity];
+            theta = new int[capacity];
+        }
+
+        /**
+         * Quantize a snapshot into this Frame.
+         */
+        void quantize(WorldSnapshot s) {
+            tick = s.tick;
+            width = s.width;
+            height = s.height;
+            level = s.level;
+            gameOver = s.gameOver;
+            players = s.players;
+            ensurePlayers(players);
+            for (int k = 0; k < players; k++) {
+                score[k] = s.score[k];
+                shipFlags[k] = (s.shipIsDestroyed[k] ? DESTROYED : 0) |
+                        (s.hyperspace[k] ? HYPERSPACE : 0) |
+                        (s.thrusting[k] ? THRUSTING : 0);
+            }
+
+            size = s.size;
+            ensureCapacity(size);
+            for (int i = 0; i < size; i++) {
+                kind[i] = s.kind[i];
+                entityWidth[i] = s.entityWidth[i];
+                entityHeight[i] = s.entityHeight[i];
+                owner[i] = s.owner[i];
+                int f = s.destroyed[i] ? DESTROYED : 0;
+                if (s.kind[i] == EntityStore.BULLET && s.owner[i] >= 0)
+                    f |= FRIENDLY;
+                if (s.kind[i] == EntityStore.SHIP && s.hyperspace[s.owner[i]])
+                    f |= HYPERSPACE;
+                flags[i] = f;
+                x[i] = s.x[i];
+                y[i] = s.y[i];
+                velocityX[i] = s.velocityX[i];
+                velocityY[i] = s.velocityY[i];
+                theta[i] = (int) Math.round(s.theta[i] * THETA_SCALE) & 0xffff;
+            }
+        }
+    }
+
+    /**
+     * Returns where a GameObject at {@code position} moving at
+     * {@code velocity} is after the given number of ticks, moving the same
+     * way (wrapping included) as EntityStore.move(). Drag is left out, so
+     * the SpaceShip is only predicted while it does not move.
+     */
+    private static int predict(int position, int velocity, int ticks,
+            int bound) {
+        bound = Fixed.fromInt(bound);
+        for (int t = 0; t < ticks; t++) {
+            position += velocity;
+            if (position >= bound)
+                position -= bound;
+            else if (position < 0)
+                position += bound;
+        }
+        return position;
+    }
+
+    /**
+     * Encodes the frames of one World for one receiver.
+     */
+    public static final class Encoder {
+        private final Frame[] history = new Frame[HISTORY];
+        private final BitWriter bits = new BitWriter();
+        private long baseline = -1;
+
+        /**
+         * Creates a new Encoder, which sends whole frames until the first one
+         * is acknowledged.
+         */
+        public Encoder() {
+            for (int h = 0; h < HISTORY; h++)
+                history[h] = new Frame();
+        }
+
+        /**
+         * The receiver has decoded the frame of the given tick, so it may be
+         * used as the baseline from now on.
+         *
+         * @param tick  The tick of the frame
+         */
+        public void ack(long tick) {
+            if (tick > baseline && history[(int) (tick & HISTORY_MASK)].tick ==
+                    tick)
+                baseline = tick;
+        }
+
+        /**
+         * Write the frame of a snapshot at the position of a buffer, which
+         * must have {@link SnapshotCodec#maxBytes} bytes remaining. Frames
+         * must be encoded in order of their ticks.
+         *
+         * @param s     The snapshot
+         * @param out   The buffer to write to
+         */
+        public void encode(WorldSnapshot s, ByteBuffer out) {
+            Frame cur = history[(int) (s.tick & HISTORY_MASK)];
+            // The baseline must still be in the history, and not about to be
+            // overwritten by this frame.
+            long distance = s.tick - baseline;
+            Frame base = null;
+            if (baseline >= 0 && distance > 0 && distance < HISTORY)
+                base = history[(int) (baseline & HISTORY_MASK)];
+            cur.quantize(s);
+
+            BitWriter w = bits;
+            w.start(out);
+            w.write(cur.tick, 64);
+            w.write(base == null ? 0 : distance, 8);
+            w.write(cur.players, 7);
+            w.write(cur.width, 16);
+            w.write(cur.height, 16);
+            w.write(cur.level, 16);
+            w.write(cur.gameOver ? 1 : 0, 1);
+            w.write(cur.size, 32);
+
+            for (int k = 0; k < cur.players; k++) {
+                boolean same = base != null && k < base.players &&
+                        base.score[k] == cur.score[k];
+                w.write(same ? 0 : 1, 1);
+                if (!same)
+                    w.write(cur.score[k], 32);
+                w.write(cur.shipFlags[k], SHIP_FLAG_BITS);
+            }
+
+            int ticks = (int) distance;
+            for (int i = 0; i < cur.size; i++) {
+                boolean known = base != null && i < base.size &&
+                        base.kind[i] == cur.kind[i] &&
+                        base.entityWidth[i] == cur.entityWidth[i] &&
+                        base.entityHeight[i] == cur.entityHeight[i] &&
+                        base.owner[i] == cur.owner[i];
+                if (!known) {
+                    w.write(1, 1);
+                    w.write(0, 1);
+                    w.write(cur.kind[i], 2);
+                    w.write(cur.entityWidth[i], 16);
+                    w.write(cur.entityHeight[i], 16);
+                    w.write(cur.owner[i] + 1, 16);
+                    w.write(cur.flags[i], ENTITY_FLAG_BITS);
+                    w.write(cur.x[i], 32);
+                    w.write(cur.y[i], 32);
+                    w.write(cur.velocityX[i], 32);
+                    w.write(cur.velocityY[i], 32);
+                    w.write(cur.theta[i], 16);
+                    continue;
+                }
+
+                int dx = cur.x[i] - predict(base.x[i], base.velocityX[i],
+                        ticks, cur.width);
+                int dy = cur.y[i] - predict(base.y[i], base.velocityY[i],
+                        ticks, cur.height);
+                boolean sameVelocity = base.velocityX[i] == cur.velocityX[i] &&
+                        base.velocityY[i] == cur.velocityY[i];
+                boolean sameTheta = base.theta[i] == cur.theta[i];
+                if (dx == 0 && dy == 0 && sameVelocity && sameTheta &&
+                        base.flags[i] == cur.flags[i]) {
+                    w.write(0, 1);
+                    continue;
+                }
+
+                w.write(1, 1);
+                w.write(1, 1);
+                w.write(cur.flags[i], ENTITY_FLAG_BITS);
+                w.writeSigned(dx);
+                w.writeSigned(dy);
+                w.write(sameVelocity ? 0 : 1, 1);
+                if (!sameVelocity) {
+                    w.write(cur.velocityX[i], 32);
+                    w.write(cur.velocityY[i], 32);
+                }
+                w.write(sameTheta ? 0 : 1, 1);
+                if (!sameTheta)
+                    w.write(cur.theta[i], 16);
+            }
+            w.finish();
+        }
+    }
+
+    /**
+     * Decodes the frames of an Encoder.
+     */
+    public static final class Decoder {
+        private final Frame[] history = new Frame[HISTORY];
+        private final BitReader bits = new BitReader();
+
+        /**
+         * Creates a new Decoder.
+         */
+        public Decoder() {
+            for (int h = 0; h < HISTORY; h++)
+                history[h] = new Frame();
+        }
+
+        /**
+         * Read a frame from the position of a buffer into a snapshot, which
+         * can then be restored into a World of the same size and number of
+         * players to draw it. The tick should be acknowledged to the
+         * Encoder.
+         *
+         * @param in    The buffer to read from
+         * @param s     The snapshot to read into. Its previous contents are
+         *              replaced.
+         * @return      The tick of the frame
+         * @throws IllegalArgumentException if the frame is corrupt, or its
+         *                                  baseline has not been decoded
+         */
+        public long decode(ByteBuffer in, WorldSnapshot s) {
+            BitReader r = bits;
+            r.start(in);
+            long tick = r.read(64);
+            int distance = (int) r.read(8);
+            Frame base = null;
+            if (distance > 0) {
+                base = history[(int) ((tick - distance) & HISTORY_MASK)];
+                if (distance >= HISTORY || base.tick != tick - distance)
+                    throw new IllegalArgumentException("Missing baseline " +
+                            (tick - distance));
+            }
+            Frame cur = history[(int) (tick & HISTORY_MASK)];
+            if (cur == base)
+                throw new IllegalArgumentException("Corrupt frame");
+
+            cur.tick = -1;
+            int players = (int) r.read(7);
+            if (players < 1)
+                throw new IllegalArgumentException("Corrupt frame");
+            int width = (int) r.read(16), height = (int) r.read(16);
+            cur.level = (int) r.read(16);
+            cur.gameOver = r.read(1) != 0;
+            long size = r.read(32);
+            if (size > Integer.MAX_VALUE || size > (long) in.remaining() * 8)
+                throw new IllegalArgumentException("Corrupt frame");
+            cur.width = width;
+            cur.height = height;
+            cur.players = players;
+            cur.size = (int) size;
+
+            cur.ensurePlayers(players);
+            for (int k = 0; k < players; k++) {
+                if (r.read(1) != 0)
+                    cur.score[k] = (int) r.read(32);
+                else if (base != null && k < base.players)
+                    cur.score[k] = base.score[k];
+                else
+                    throw new IllegalArgumentException("Corrupt frame");
+                cur.shipFlags[k] = (int) r.read(SHIP_FLAG_BITS);
+            }
+
+            cur.ensureCapacity(cur.size);
+            for (int i = 0; i < cur.size; i++) {
+                boolean changed = r.read(1) != 0;
+                if (changed && r.read(1) == 0) {
+                    // A GameObject the baseline does not have
+                    cur.kind[i] = (byte) r.read(2);
+                    cur.entityWidth[i] = (int) r.read(16);
+                    cur.entityHeight[i] = (int) r.read(16);
+                    cur.owner[i] = (int) r.read(16) - 1;
+                    cur.flags[i] = (int) r.read(ENTITY_FLAG_BITS);
+                    cur.x[i] = (int) r.read(32);
+                    cur.y[i] = (int) r.read(32);
+                    cur.velocityX[i] = (int) r.read(32);
+                    cur.velocityY[i] = (int) r.read(32);
+                    cur.theta[i] = (int) r.read(16);
+                    if (cur.kind[i] == EntityStore.SHIP &&
+                            (cur.owner[i] < 0 || cur.owner[i] >= players))
+                        throw new IllegalArgumentException("Corrupt frame");
+                    continue;
+                }
+                if (base == null || i >= base.size)
+                    throw new IllegalArgumentException("Corrupt frame");
+
+                // The same GameObject as in the baseline, moved on
+                cur.kind[i] = base.kind[i];
+                cur.entityWidth[i] = base.entityWidth[i];
+                cur.entityHeight[i] = base.entityHeight[i];
+                cur.owner[i] = base.owner[i];
+                cur.flags[i] = base.flags[i];
+                cur.velocityX[i] = base.velocityX[i];
+                cur.velocityY[i] = base.velocityY[i];
+                cur.theta[i] = base.theta[i];
+                int x = predict(base.x[i], base.velocityX[i], distance, width);
+                int y = predict(base.y[i], base.velocityY[i], distance, height);
+                if (changed) {
+                    cur.flags[i] = (int) r.read(ENTITY_FLAG_BITS);
+                    x += r.readSigned();
+                    y += r.readSigned();
+                    if (r.read(1) != 0) {
+                        cur.velocityX[i] = (int) r.read(32);
+                        cur.velocityY[i] = (int) r.read(32);
+                    }
+                    if (r.read(1) != 0)
+                        cur.theta[i] = (int) r.read(16);
+                }
+                if (cur.kind[i] == EntityStore.SHIP && cur.owner[i] >= players)
+                    throw new IllegalArgumentException("Corrupt frame");
+                cur.x[i] = x;
+                cur.y[i] = y;
+            }
+            r.finish();
+            cur.tick = tick;
+
+            fill(cur, s);
+            return tick;
+        }
+
+        /**
+         * Turn a Frame back into a snapshot.
+         */
+        private static void fill(Frame f, WorldSnapshot s) {
+            s.width = f.width;
+            s.height = f.height;
+            s.tick = f.tick;
+            s.level = f.level;
+            s.generatingLevel = false;
+            s.levelTicks = 0;
+            s.gameOver = f.gameOver;
+            s.gameOverTicks = 0;
+            s.hostilesLeft = 0;
+            s.maxBullets = 0;
+            s.randomState = 0;
+
+            s.players = f.players;
+            s.ensurePlayers(f.players);
+            for (int k = 0; k < f.players; k++) {
+                s.lastInput[k] = 0;
+                s.shipX[k] = s.shipY[k] = 0;
+                s.shipVelocityX[k] = s.shipVelocityY[k] = 0;
+                s.shipTheta[k] = Math.PI;
+                s.shipIsDestroyed[k] = (f.shipFlags[k] & DESTROYED) != 0;
+                s.score[k] = f.score[k];
+                s.bullets[k] = 0;
+                s.hyperspaceTicks[k] = 0;
+                s.hyperspace[k] = (f.shipFlags[k] & HYPERSPACE) != 0;
+                s.thrusting[k] = (f.shipFlags[k] & THRUSTING) != 0;
+            }
+
+            s.size = f.size;
+            s.ensureCapacity(f.size);
+            for (int i = 0; i < f.size; i++) {
+                s.kind[i] = f.kind[i];
+                s.entityWidth[i] = f.entityWidth[i];
+                s.entityHeight[i] = f.entityHeight[i];
+                s.owner[i] = f.kind[i] == EntityStore.ASTEROID ? -1 :
+                        f.owner[i];
+                s.destroyed[i] = (f.flags[i] & DESTROYED) != 0;
+                s.x[i] = f.x[i];
+                s.y[i] = f.y[i];
+                // Good enough to draw the move into the current tick
+                s.previousX[i] = f.x[i] - f.velocityX[i];
+                s.previousY[i] = f.y[i] - f.velocityY[i];
+                s.velocityX[i] = f.velocityX[i];
+                s.velocityY[i] = f.velocityY[i];
+                s.theta[i] = f.theta[i] / THETA_SCALE;
+                s.bulletTicks[i] = 1;
+
+                if (f.kind[i] == EntityStore.SHIP) {
+                    int k = f.owner[i];
+                    s.shipX[k] = s.x[i];
+                    s.shipY[k] = s.y[i];
+                    s.shipVelocityX[k] = f.velocityX[i];
+                    s.shipVelocityY[k] = f.velocityY[i];
+                    s.shipTheta[k] = s.theta[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes bits, most significant first, into a ByteBuffer.
+     */
+    private static final class BitWriter {
+        private ByteBuffer out;
+        private long pending;
+        private int count;
+
+        void start(ByteBuffer out) {
+            this.out = out;
+            pending = 0;
+            count = 0;
+        }
+
+        /**
+         * Write the lowest n bits of a value, n from 1 to 64.
+         */
+        void write(long value, int n) {
+            if (n > 32) {
+                write(value >>> 32, n - 32);
+                n = 32;
+            }
+            pending = (pending << n) | (value & ((1L << n) - 1));
+            count += n;
+            while (count >= 8) {
+                count -= 8;
+                out.put((byte) (pending >>> count));
+            }
+        }
+
+        /**
+         * Write a small signed value: 4 bits if it is within +-8, 10 bits if
+         * within +-512, or else 32 bits, each after a prefix.
+         */
+        void writeSigned(int value) {
+            int zigzag = (value << 1) ^ (value >> 31);
+            if ((zigzag & ~0xf) == 0) {
+                write(0, 1);
+                write(zigzag, 4);
+            }
+            else if ((zigzag & ~0x3ff) == 0) {
+                write(2, 2);
+                write(zigzag, 10);
+            }
+            else {
+                write(3, 2);
+                write(zigzag, 32);
+            }
+        }
+
+        /**
+         * Pad the last byte with zeros.
+         */
+        void finish() {
+            if (count > 0)
+                write(0, 8 - count);
+            out = null;
+        }
+    }
+
+    /**
+     * Reads the bits written by a BitWriter.
+     */
+    private static final class BitReader {
+        private ByteBuffer in;
+        private long pending;
+        private int count;
+
+        void start(ByteBuffer in) {
+            this.in = in;
+            pending = 0;
+            count = 0;
+        }
+
+        /**
+         * Read n bits, n from 1 to 64.
+         */
+        long read(int n) {
+            if (n > 32) {
+                long high = read(n - 32);
+                return (high << 32) | read(32);
+            }
+            while (count < n) {
+                pending = (pending << 8) | (in.get() & 0xff);
+                count += 8;
+            }
+            count -= n;
+            return (pending >>> count) & ((1L << n) - 1);
+        }
+
+        int readSigned() {
+            int zigzag;
+            if (read(1) == 0)
+                zigzag = (int) read(4);
+            else if (read(1) == 0)
+                zigzag = (int) read(10);
+            else
+                zigzag = (int) read(32);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        void finish() {
+            in = null;
+        }
+    }
+}
@@ -2,26 +2,29 @@ package asteroid;
 
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Font;
-import java.awt.FontMetrics;
+import java.awt.DisplayMode;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+import java.awt.Toolkit;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
+import java.awt.image.VolatileImage;
+import java.io.File;
+import java.io.IOException;
+import javax.management.JMException;
 import javax.swing.BorderFactory;
 import javax.swing.JPanel;
-import javax.swing.Timer;
+import javax.swing.SwingUtilities;
 
 /**
- * The Space class is a JPanel that holds the gameplay environment. In addition,
- * at this time, all keystrokes will pass through Space.
+ * The Space class is a JPanel that displays the gameplay environment (a
+ * World) and advances it in real time. In addition, at this time, all
+ * keystrokes will pass through Space.
  * 
  * @author Daniel Ge
  */
@@ -29,32 +32,65 @@ public class Space extends JPanel {
     private static final int WIDTH = 640;
     private static final int HEIGHT = 480;
 
-    private SpaceShip spaceShip;
+    // The game being played. Space only draws it and feeds it keystrokes.
+    private World world;
+
+    // The input of the game being played, so that it can be saved and played
+    // back, the Replay being shown instead of a game, or the GameClient (or
+    // RollbackPeer) of a network game. Only one of them is non-null at a
+    // time.
+    private Recording recording;
+    private Replay replay;
+    private GameClient client;
+    private RollbackPeer peer;
+
+    // loop advances the World every World.INTERVAL ms on its own thread and
+    // repaints in between. Everything it touches is guarded by lock.
+    private final GameLoop loop;
+    private final Object lock = new Object();
+    private volatile float alpha = 1.0f;
+
+    // Frame rate to use if the refresh rate of the screen is unknown.
+    private static final int DEFAULT_FRAME_RATE = 60;
+
+    /* With active rendering (the default), the loop thread draws each frame
+     * into backBuffer and copies it to the screen itself, instead of asking
+     * Swing to repaint. paintComponent is then only used when the loop is not
+     * running (e.g. while paused) or when the window needs repairing. Run
+     * with -Dasteroid.rendering=passive to always go through repaint().
+     */
+    private final boolean activeRendering =
+            !"passive".equals(System.getProperty("asteroid.rendering"));
+    private VolatileImage backBuffer;
 
-    // timer and INTERVAL are used together to advance the frame.
-    private Timer timer;
-    private final int INTERVAL = 25;
+    // The keys that control the SpaceShip. Installed once, and sampled by the
+    // loop thread every tick. Allows for simultaneous keystrokes.
+    private final Keyboard keyboard = new Keyboard();
 
-    /* These variables are used to determine which keys are pushed. These are
-     * used so we can allow for simultaneous keystrokes. In addition, these
-     * are used to keep the user from holding down the space bar to fire the
-     * maximum number of asteroids at once.
-     */
-    private boolean leftPressed = false,
-                    rightPressed = false,
-                    spacePressed = false,
-                    upPressed = false;
-    private boolean spaceFired = false;
-
-    /* Variables that do not affect the mechanics of the game. These are used
-     * to create delays, advance levels, etc.
-     */
+    // Whether a game has been started and is paused. Guarded by lock, as
+    // render() reads them on the loop thread.
     private boolean gameStarted, isPaused;
-    private int level;
-    private boolean generatingLevel;
-    private Timer genLevelTimer, shipDestroyedTimer;
-    private boolean shipDestroyed;
-    private final int MAX_ASTEROIDS = 12;
+
+    // Set when the network game being played is lost. The World is then left
+    // as it was, since stepping it on its own would only make up a game the
+    // other players never see.
+    private boolean connectionLost;
+
+    // The player whose score is shown, which stays the same after the
+    // network game is lost.
+    private int player;
+
+    // Draws the text on top of the World. Guarded by lock as well.
+    private final Hud hud = new Hud(WIDTH, HEIGHT);
+
+    // The debris of whatever is destroyed in the World being shown, reused
+    // from game to game. Guarded by lock as well.
+    private static final int MAX_PARTICLES = 4096;
+    private final ParticleSystem particles = new ParticleSystem(MAX_PARTICLES);
+
+    // Timings of every tick and frame, readable over JMX. Only recorded
+    // into while holding lock.
+    private final TickStats stats = new TickStats();
 
     /**
      * Create a new Space environment.
@@ -68,17 +104,33 @@ public class Space extends JPanel {
         // Allows the JPanel to accept keystrokes.
         this.setFocusable(true);
 
-        // Creates the timer that advances the frame at INTERVAL
-        timer = new Timer(INTERVAL, new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                tick();
+        // Creates the loop that advances the frame at World.INTERVAL and
+        // repaints as often as the screen refreshes.
+        loop = new GameLoop(new GameLoop.Callback() {
+            public void tick() {
+                Space.this.tick();
             }
-        });
+
+            public void render(float alpha) {
+                Space.this.alpha = alpha;
+                if (activeRendering)
+                    renderFrame(alpha);
+                else
+                    repaint();
+            }
+        }, World.INTERVAL, refreshRate());
 
         gameStarted = false;
-        shipDestroyed = false;
+
+        try {
+            stats.register();
+        } catch (JMException e) {
+            System.err.println("Cannot register " + TickStats.OBJECT_NAME +
+                    ": " + e);
+        }
 
         // Set up action listeners
+        addKeyListener(keyboard);
         addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
@@ -88,7 +140,11 @@ public class Space extends JPanel {
                 }
                 // Pause
                 else if (e.getKeyCode() == KeyEvent.VK_F3) {
-                    if (gameStarted)
+                    boolean pause;
+                    synchronized (lock) {
+                        pause = canPause();
+                    }
+                    if (pause)
                         pause();
                 }
             }
@@ -100,7 +156,13 @@ public class Space extends JPanel {
         addFocusListener(new FocusAdapter() {
             @Override
             public void focusLost(FocusEvent e) {
-                if (gameStarted && !isPaused)
+                // The keys may be let go somewhere else
+                keyboard.clear();
+                boolean pause;
+                synchronized (lock) {
+                    pause = canPause() && !isPaused;
+                }
+                if (pause)
                     pause();
             }
         });
@@ -111,292 +173,298 @@ public class Space extends JPanel {
      * the game.
      */
     public void play() {
-        gameStarted = true;
-        isPaused = false;
-        shipDestroyed = false;
-        level = 1;
-        GameObject.resetList();
-        spaceShip = new SpaceShip(WIDTH/2, HEIGHT/2);
-        spaceShip.addToGlobalList();
-        GameObject.setBounds(WIDTH, HEIGHT);
-        HostileObject.clearList();
-
-        // Key listeners to control the SpaceShip.
-        addKeyListener(new KeyAdapter() {
-            public void keyPressed(KeyEvent e) {
-                // Rotate CCW
-                if (e.getKeyCode() == KeyEvent.VK_LEFT)
-                    leftPressed = true;
-                // Rotate CW
-                else if (e.getKeyCode() == KeyEvent.VK_RIGHT)
-                    rightPressed = true;
-                // Accelerate forwards
-                else if (e.getKeyCode() == KeyEvent.VK_UP)
-                    upPressed = true;
-                // Fire bullets
-                else if (e.getKeyCode() == KeyEvent.VK_SPACE)
-                    spacePressed = true;
-                // Go hyperspace!
-                else if (e.getKeyCode() == KeyEvent.VK_SHIFT)
-                    spaceShip.hyperspace();
-            }
-
-            public void keyReleased(KeyEvent e) {
-                // Disallows the user from firing multiple bullets by holding
-                // down the spacebar.
-                if (e.getKeyCode() == KeyEvent.VK_SPACE) {
-                    spacePressed = false;
-                    spaceFired = false;
-                }
-                else if (e.getKeyCode() == KeyEvent.VK_UP)
-                    upPressed = false;
-                else if (e.getKeyCode() == KeyEvent.VK_LEFT)
-                    leftPressed = false;
-                else if (e.getKeyCode() == KeyEvent.VK_RIGHT)
-                    rightPressed = false;
-            }
-        });
+        synchronized (lock) {
+            gameStarted = true;
+            isPaused = false;
+            connectionLost = false;
+            leave();
+            player = 0;
+            world = new World(WIDTH, HEIGHT);
+            world.setStats(stats);
+            particles.clear();
+            world.setParticles(particles);
+            world.setChecksumLog(new ChecksumLog());
+            recording = new Recording(world);
+            replay = null;
+        }
 
-        /* Creates a timer that delays the creation of new asteroids (advancing
-         * the level) for a second after all asteroids are destroyed.
-         */
-        genLevelTimer = new Timer(1000, new ActionListener() {
-                public void actionPerformed(ActionEvent e) {
-                    nextLevel();
-                }
-        });
+        loop.start();
+    }
 
-        /* Creates a timer that delays the display of the GAME OVER message
-         * after the SpaceShip is destroyed.
-         */
-        shipDestroyedTimer = new Timer(1000, new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                shipDestroyed = true;
-                shipDestroyedTimer.stop();
-            }
-        });
+    /**
+     * Play back a recorded game in real time. The keys do nothing until a new
+     * game is started, and the World stops when the Recording ends.
+     *
+     * @param r The Recording to play back
+     */
+    public void replay(Recording r) {
+        synchronized (lock) {
+            gameStarted = true;
+            isPaused = false;
+            connectionLost = false;
+            leave();
+            player = 0;
+            replay = new Replay(r);
+            world = replay.getWorld();
+            world.setStats(stats);
+            particles.clear();
+            world.setParticles(particles);
+            recording = null;
+        }
+        loop.start();
+    }
 
-        timer.start();
-        generateAsteroids(level);
-        generatingLevel = false;
+    /**
+     * Play a network game through a GameClient that has joined it. The
+     * GameClient is closed once another game is started.
+     *
+     * @param c The GameClient
+     */
+    public void join(GameClient c) {
+        synchronized (lock) {
+            gameStarted = true;
+            isPaused = false;
+            connectionLost = false;
+            leave();
+            client = c;
+            player = c.getPlayer();
+            world = c.getWorld();
+            world.setStats(stats);
+            particles.clear();
+            world.setParticles(particles);
+            recording = null;
+            replay = null;
+        }
+        loop.start();
     }
 
     /**
-     * Sets up the next frame and also watches out for non-movement changes
-     * for certain objects.
+     * Play a head-to-head game through a RollbackPeer that has connected to
+     * the other player. The RollbackPeer is closed once another game is
+     * started.
+     *
+     * @param p The RollbackPeer
      */
-    private void tick() {
-        performKeyAction();
-        globalUpdate();
-
-        // Delays the advancement into the next level.
-        if (HostileObject.listEmpty() && !spaceShip.isDestroyed() &&
-                !generatingLevel) {
-            System.out.println("Advancing level");
-            generatingLevel = true;
-            genLevelTimer.start();
+    public void join(RollbackPeer p) {
+        synchronized (lock) {
+            gameStarted = true;
+            isPaused = false;
+            connectionLost = false;
+            leave();
+            peer = p;
+            player = p.getPlayer();
+            world = p.getWorld();
+            world.setStats(stats);
+            particles.clear();
+            world.setParticles(particles);
+            recording = null;
+            replay = null;
         }
+        loop.start();
+    }
 
-        // Delays display of GAME OVER message
-        if (spaceShip.isDestroyed() && !shipDestroyedTimer.isRunning() &&
-                !shipDestroyed) {
-            shipDestroyedTimer.start();
+    /**
+     * Leave the network game being played, if any. Must hold lock.
+     */
+    private void leave() {
+        try {
+            if (client != null)
+                client.close();
+            if (peer != null)
+                peer.close();
+        } catch (IOException e) {
+            System.err.println("Cannot leave the game: " + e);
         }
-        
-        repaint();
+        client = null;
+        peer = null;
     }
 
     /**
-     * Performs actions based on which keys are pushed down. Allows for
-     * simultaneous key-presses.
+     * Write the input of the game being played (or the last one played) to a
+     * file, so that it can be played back with {@link #replay}. The checksum
+     * of every tick goes to a ChecksumLog next to it, so that a Replay can
+     * tell whether it plays out the same.
+     *
+     * @param file  The file to write to
+     * @return      {@code false} if there is no game to save, {@code true} if
+     *              otherwise
+     * @throws IOException  if the file cannot be written
      */
-    private void performKeyAction() {
-        if (leftPressed)
-            spaceShip.rotate(-1);
-        if (rightPressed)
-            spaceShip.rotate(1);
-        if (upPressed)
-            spaceShip.accelerate();
-        if (spacePressed) {
-            if (!spaceFired) {
-                Bullet b = spaceShip.fire();
-                if (b != null)
-                    b.addToGlobalList();
-            }
-            spaceFired = true;
+    public boolean saveRecording(File file) throws IOException {
+        synchronized (lock) {
+            if (recording == null)
+                return false;
+            recording.write(file);
+            world.getChecksumLog().write(ChecksumLog.fileFor(file));
+            return true;
         }
-        repaint();
     }
-    
+
     /**
-     * For each GameObject, update its position and then destroy them as
-     * necessary.
+     * Advances the World to the next frame with the keys that are currently
+     * pushed down, or with the next recorded input when replaying. In a
+     * network game, the keys go to the server (or the other peer) as well.
+     * Called on the loop thread.
      */
-    private void globalUpdate() {
-        Iterator<GameObject> iter = GameObject.objList.iterator();
-        Set<Asteroid> brokenAsteroids = new HashSet<Asteroid>();
-        
-        // Look for collisions and set GameObjects for destruction as necessary.
-        while (iter.hasNext()) {
-            GameObject element = iter.next();
-
-            // Collisions between a target and a Bullet destroys both depending
-            // on the circumstances.
-            if (element instanceof Bullet && !element.isDestroyed()) {
-                Bullet bul = (Bullet) element; // This renaming is for clarity
-                                               // so I that I know the current
-                                               // element is a bullet.
-
-                /* If a bullet collides with an Asteroid or SpaceShip, depending
-                 * on the circumstances, mark it for destruction if it has not
-                 * already been done.
-                 */
-                for (GameObject target : GameObject.objList) {
-                    if (!target.isDestroyed() && bul.intersect(target)) {
-                        if (target instanceof Asteroid) {
-                            target.destroy();
-                            bul.destroy();
-
-                            // Broken Asteroids do not automatically get added
-                            // to the global list, so we collect them here.
-                            Set<Asteroid> temp = 
-                                    ((Asteroid) target).breakAsteroid();
-                            if (temp != null)
-                                brokenAsteroids.addAll(temp);
-
-                            /* In the future, after saucers will be implemented,
-                             * only collisions from bullets fired by the
-                             * SpaceShip will add to the score.
-                             */
-                            if (bul.isFriendly())
-                                spaceShip.addScore(((Asteroid) target).getScore());
-
-                            break;
-                        }
-
-                        // Destroy the SpaceShip if a bullet was fired by an
-                        // enemy.
-                        if (target instanceof SpaceShip && !bul.isFriendly()) {
-                            target.destroy();
-                            bul.destroy();
-
-                            break;
-                        }
-                    }
-                }
+    private void tick() {
+        synchronized (lock) {
+            if (replay != null) {
+                if (replay.hasNext())
+                    replay.step();
             }
-
-            /*
-             * Any collisions with the SpaceShip will destroy the SpaceShip.
-             */
-            if (element instanceof SpaceShip && !element.isDestroyed()) {
-                SpaceShip ship = (SpaceShip) element; // Again, this is for clarity
-                for (GameObject hostile : GameObject.objList) {
-                    if (hostile instanceof HostileObject && 
-                            !hostile.isDestroyed() && hostile.intersect(ship)) {
-                        hostile.destroy();
-                        ship.destroy();
-
-                        if (hostile instanceof Asteroid) {
-                            Set<Asteroid> temp = 
-                                    ((Asteroid) hostile).breakAsteroid();
-                            if (temp != null)
-                                brokenAsteroids.addAll(temp);
-                        }
-
-                        // Since collisions with SpaceShips destroy the
-                        // HostileObject, we will add the score.
-                        ship.addScore(((HostileObject) hostile).getScore());
-                        break;
-                    }
+            else if (client != null) {
+                try {
+                    client.tick(keyboard.sample());
+                } catch (IOException e) {
+                    System.err.println("Lost the network game: " + e);
+                    lose();
                 }
             }
-            
-        }
-
-        // Add the new broken asteroids to the global set of objects
-        GameObject.objList.addAll(brokenAsteroids);
-
-        // Remove destroyed objects and update the movements of the rest
-        iter = GameObject.objList.iterator();
-        while (iter.hasNext()) {
-            GameObject g = iter.next();
-            if (g.isDestroyed()) {
-                iter.remove();
+            else if (peer != null) {
+                try {
+                    peer.tick(keyboard.sample());
+                } catch (IOException e) {
+                    System.err.println("Lost the head-to-head game: " + e);
+                    lose();
+                }
             }
-            else {
-                g.move();
+            else if (!connectionLost) {
+                int input = keyboard.sample();
+                if (recording != null)
+                    recording.add(input);
+                world.step(input);
             }
         }
     }
 
     /**
-     * Create new Asteroids in a fixed radius around the SpaceShip. The number
-     * of asteroids is based on what level it is.
-     *
-     * @param lvl   the next level
+     * End the network game being played once it is lost, leaving the World as
+     * it was. The loop is stopped on the event dispatch thread, since the
+     * loop thread cannot stop itself while holding lock. Must hold lock.
      */
-    private void generateAsteroids (int lvl) {
-        int numAsteroids = lvl + 3;
-        if (numAsteroids > MAX_ASTEROIDS)
-            numAsteroids = MAX_ASTEROIDS;
-
-        final int DIAMETER = WIDTH;
-
-        // Messy logic for generating randomly the positions for the asteroids
-        // in a circle around the SpaceShip. I think I might have been high when
-        // I wrote this.
-        for (int n = 0; n < numAsteroids; n++) {
-            int x_init = ((int)(Math.random() * DIAMETER) - 200) + spaceShip.x;
-            if (x_init < 0)
-                x_init += WIDTH;
-            if (x_init > WIDTH)
-                x_init -= WIDTH;
-            
-            int y_sign = (int) (Math.random() * 2);
-            if (y_sign == 0)
-                y_sign = -1;
-            else
-                y_sign = 1;
-
-            int y_init = spaceShip.y + y_sign * 
-                    (int)(Math.sqrt((DIAMETER * DIAMETER)/4 -
-                    (x_init - spaceShip.x)*(x_init - spaceShip.x)));
-            if (y_init < 0)
-                y_init += HEIGHT;
-            if (y_init > HEIGHT)
-                y_init -= HEIGHT;
-
-            Asteroid.createBigAsteroid(x_init, y_init,
-                    GameObject.generateAngle()).addToGlobalList();
-        }
+    private void lose() {
+        leave();
+        connectionLost = true;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                // Unless another game has been started since
+                boolean lost;
+                synchronized (lock) {
+                    lost = connectionLost;
+                }
+                if (lost)
+                    loop.stop();
+                repaint();
+            }
+        });
     }
 
     /**
-     * Pause the game.
+     * Pause the game, or carry on with it if it is paused.
      */
     private void pause() {
-        if (!isPaused) {
-            isPaused = true;
-            timer.stop();
+        boolean paused;
+        synchronized (lock) {
+            paused = isPaused = !isPaused;
+        }
+        // Not holding lock, since the loop thread may be waiting for it
+        if (paused) {
+            loop.stop();
             repaint();
         }
         else {
-            isPaused = false;
-            timer.start();
+            loop.start();
+        }
+    }
+
+    /**
+     * Returns whether the game being played can be paused. A network or
+     * head-to-head game cannot be, since the server (or the other peer)
+     * drops a player who stops sending input. Must hold lock.
+     */
+    private boolean canPause() {
+        return gameStarted && !connectionLost && client == null &&
+                peer == null;
+    }
+
+    /**
+     * Draw a frame into the back buffer and copy it to the screen. Called on
+     * the loop thread when rendering actively.
+     *
+     * @param alpha How far between the previous tick and the current tick to
+     *              draw the GameObjects
+     */
+    private void renderFrame(float alpha) {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if (gc == null || !isShowing())
+            return;
+
+        // The contents of a VolatileImage can be lost at any time (e.g. when
+        // the display mode changes), in which case the frame is drawn again.
+        do {
+            if (backBuffer == null ||
+                    backBuffer.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE)
+                backBuffer = gc.createCompatibleVolatileImage(WIDTH, HEIGHT);
+
+            Graphics2D g2d = backBuffer.createGraphics();
+            try {
+                g2d.setColor(Color.black);
+                g2d.fillRect(0, 0, WIDTH, HEIGHT);
+                synchronized (lock) {
+                    render(g2d, alpha);
+                }
+            } finally {
+                g2d.dispose();
+            }
+
+            Graphics screen = getGraphics();
+            if (screen != null) {
+                try {
+                    screen.drawImage(backBuffer, 0, 0, null);
+                } finally {
+                    screen.dispose();
+                }
+            }
+        } while (backBuffer.contentsLost());
+
+        // Otherwise X11 may hold on to the frame for a while
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    /**
+     * Returns the refresh rate of the screen, which is the most frames per
+     * second worth rendering.
+     *
+     * @return  The refresh rate of the screen in Hz
+     */
+    private static int refreshRate() {
+        try {
+            int rate = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+            if (rate != DisplayMode.REFRESH_RATE_UNKNOWN)
+                return rate;
+        } catch (HeadlessException e) {
+            // No screen, so it does not matter
         }
+        return DEFAULT_FRAME_RATE;
     }
 
     /**
-     * Advance the level and generate a new environment for it.
-     * This happens at the end of the level delay.
+     * Display a World without playing it, i.e. without starting the loop.
+     * Used to paint a World outside of a game (e.g. in the benchmarks).
+     *
+     * @param world The World to display
      */
-    private void nextLevel() {
-        System.out.println("Level advance");
-        level++;
-        generateAsteroids(level);
-        generatingLevel = false;
-        genLevelTimer.stop();
+    void setWorld(World world) {
+        synchronized (lock) {
+            leave();
+            connectionLost = false;
+            player = 0;
+            this.world = world;
+            recording = null;
+            replay = null;
+            gameStarted = true;
+        }
     }
 
     /**
@@ -419,71 +487,51 @@ public class Space extends JPanel {
         this.setBackground(Color.black);
         Graphics2D g2d = (Graphics2D) g;
 
+        // The loop thread must not advance the World while it is drawn.
+        synchronized (lock) {
+            render(g2d, alpha);
+        }
+    }
+
+    /**
+     * Draw the World (or the instructions, if no game has been started) and
+     * the text on top of it.
+     *
+     * @param g2d   The Graphics context.
+     * @param alpha How far between the previous tick and the current tick to
+     *              draw the GameObjects
+     */
+    private void render(Graphics2D g2d, float alpha) {
+        long start = System.nanoTime();
+
         // Only paint stuff if the game has been started before.
         if (gameStarted) {
-            for (GameObject go : GameObject.objList) {
+            particles.draw(g2d, WIDTH, HEIGHT, alpha);
+            for (int i = 0; i < world.size(); i++) {
+                GameObject go = world.get(i);
                 // A SpaceShip in hyperspace disappears from the screen for a
                 // bit before it reappears at another location.
                 if (!(go instanceof SpaceShip && ((SpaceShip) go).inHyperspace()))
-                    go.draw(g);
+                    go.draw(g2d, alpha);
             }
 
-            g2d.setColor(Color.WHITE);
-
-            // Draw the score
-            String scoreText = String.valueOf(spaceShip.getScore());
-            Font original = g2d.getFont();
-            g2d.setFont(new Font("Dialog", Font.BOLD, 20));
-            FontMetrics scoreMetrics = g2d.getFontMetrics();
-            int scoreHeight = scoreMetrics.getHeight();
-            g2d.drawString(scoreText, 100, scoreHeight);
-
-            // Draw PAUSED
-            if (isPaused) {
-                g2d.setFont(new Font("Dialog", Font.PLAIN, 30));
-                g2d.setColor(Color.RED);
-                String pauseText = "PAUSED";
-
-                // get metrics from the graphics
-                FontMetrics pauseMetrics = g2d.getFontMetrics();
-                // get the height of a line of text in this font and render context
-                int pauseHeight = pauseMetrics.getHeight();
-                // get the advance of my text in this font and render context
-                int pauseAdv = pauseMetrics.stringWidth(pauseText);
-
-                // Draw the string in the center
-                g2d.drawString(pauseText, WIDTH/2-pauseAdv/2, HEIGHT/2-pauseHeight/2);
-                g2d.setFont(original);
-            }
+            // Draw the score of the player's SpaceShip
+            hud.drawScore(g2d, world.getSpaceShip(player).getScore());
 
-            // Draw GAME OVER
-            if (shipDestroyed) {
-                g2d.setFont(new Font("Dialog", Font.PLAIN, 30));
-                String loseText = "GAME OVER";
-
-                FontMetrics loseMetrics = g2d.getFontMetrics();
-                int loseAdv = loseMetrics.stringWidth(loseText);
+            // Draw CONNECTION LOST, or else PAUSED
+            if (connectionLost)
+                hud.drawConnectionLost(g2d);
+            else if (isPaused)
+                hud.drawPaused(g2d);
 
-                g2d.drawString(loseText, WIDTH/2 - loseAdv/2, 150);
-                g2d.setFont(original);
-            }
+            // Draw GAME OVER
+            if (world.isGameOver())
+                hud.drawGameOver(g2d);
         }
         else {
-            String instr1 = "PRESS F2 TO START";
-            String instr2 = "Help > Instructions FOR INSTRUCTIONS";
-
-            g2d.setColor(Color.red);
-            Font original = g2d.getFont();
-            g2d.setFont(new Font("Dialog", Font.PLAIN, 30));
-
-            FontMetrics metrics = g2d.getFontMetrics();
-            int instr1_Adv = metrics.stringWidth(instr1);
-            int instr2_Adv = metrics.stringWidth(instr2);
-
-            g2d.drawString(instr1, WIDTH/2 - instr1_Adv/2, 150);
-            g2d.drawString(instr2, WIDTH/2 - instr2_Adv/2, 300);
-
-            g2d.setFont(original);
+            hud.drawInstructions(g2d);
         }
+
+        stats.record(TickStats.RENDER, System.nanoTime() - start);
     }
 }
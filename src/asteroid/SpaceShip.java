@@ -1,62 +1,119 @@
 package asteroid;
 
-import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
 import java.awt.Shape;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.geom.AffineTransform;
-import java.awt.geom.GeneralPath;
 import java.awt.geom.Rectangle2D;
-import javax.swing.Timer;
 
 /**
  * Represents a space ship in Asteroids.
  *
  * @author Daniel Ge
  */
-public class SpaceShip extends GameObject {
+public class SpaceShip extends GameObject implements TimerWheel.Timeout {
     private static final int WIDTH = 15, HEIGHT = 23;
 
+    // The SpaceShip turns in steps of ROTATE, so it can only ever face
+    // HEADINGS different ways.
+    static final int HEADINGS = 45;
+    private static final double ROTATE = 2*Math.PI/HEADINGS;
+
+    // Per heading: the sine and cosine of it in fixed point, the velocity
+    // one tick of thrust adds, and where the nose (and so a new Bullet) is
+    // relative to the center, in pixels.
+    private static final int[] SIN = new int[HEADINGS], COS = new int[HEADINGS];
+    private static final int[] THRUST_X = new int[HEADINGS],
+                               THRUST_Y = new int[HEADINGS];
+    private static final int[] NOSE_X = new int[HEADINGS],
+                               NOSE_Y = new int[HEADINGS];
+
+    static {
+        final double ACCELERATION = 0.2;
+        final int NOSE = 11;
+        for (int h = 0; h < HEADINGS; h++) {
+            double theta = headingAngle(h);
+            double sin = StrictMath.sin(theta), cos = StrictMath.cos(theta);
+            SIN[h] = Fixed.fromDouble(sin);
+            COS[h] = Fixed.fromDouble(cos);
+            THRUST_X[h] = Fixed.fromDouble(-ACCELERATION * sin);
+            THRUST_Y[h] = Fixed.fromDouble(ACCELERATION * cos);
+            NOSE_X[h] = (int) -Math.round(NOSE * sin);
+            NOSE_Y[h] = (int) Math.round(NOSE * cos);
+        }
+    }
+
+    // Pre-rotated images of the SpaceShip, shared by every SpaceShip. They
+    // are in a holder class so that headless simulations never load them.
+    private static final class Sprites {
+        static final ShipSprites INSTANCE = new ShipSprites();
+    }
+
+    // Which player flies this SpaceShip, from 0
+    private final int player;
+
     private int score;
-    
-    // hsTimer sets up the delay that between the time the SpaceShip disappears
-    // and the time it reappears.
-    private Timer hsTimer;
+
+    // Which of the HEADINGS ways the SpaceShip faces. The orientation in the
+    // EntityStore always follows it.
+    private int heading;
+
+    // Number of Bullets fired by this SpaceShip that are in the World
+    int bullets;
+
+    // HYPERSPACE_DELAY is the number of ticks between the time the SpaceShip
+    // disappears and the time it reappears.
+    private static final int HYPERSPACE_DELAY = 500 / World.INTERVAL;
+    private int hyperspaceTimer = TimerWheel.NONE;
     private boolean hyperspace_mode;
+    private boolean thrusting;
 
     /**
-     * Creates a new SpaceShip facing upwards at the specified coordinates.
+     * Creates a new SpaceShip for the first player, facing upwards at the
+     * specified coordinates.
      * 
-     * @param x X-coordinate
-     * @param y Y-coordinate
+     * @param world The World the SpaceShip lives in
+     * @param x     X-coordinate
+     * @param y     Y-coordinate
      */
-    public SpaceShip (int x, int y) {
-        super(x, y, WIDTH, HEIGHT, 0.0, 0.0, Math.PI);
+    public SpaceShip (World world, int x, int y) {
+        this(world, 0, x, y);
+    }
+
+    /**
+     * Creates a new SpaceShip facing upwards at the specified coordinates.
+     *
+     * @param world     The World the SpaceShip lives in
+     * @param player    Which player flies the SpaceShip, from 0
+     * @param x         X-coordinate
+     * @param y         Y-coordinate
+     */
+    SpaceShip (World world, int player, int x, int y) {
+        super(world, x, y, WIDTH, HEIGHT, 0.0, 0.0, Math.PI);
+        this.player = player;
         score = 0;
         
         hyperspace_mode = false;
-        hsTimer = new Timer(500, new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                hyperspace_helper();
-            }
-        });
     }
 
     /**
-     * Update the location of the SpaceShip. Also slows down the SpaceShip
-     * gradually.
+     * The SpaceShip slows down gradually as it moves.
      *
+     * @return  The deceleration applied to the SpaceShip after every move.
      * @see GameObject#move
      */
     @Override
-    public void move() {
-        super.move();
-
+    double drag() {
         final double DECELERATION = 0.99;
-        velocityX *= DECELERATION;
-        velocityY *= DECELERATION;
+        return DECELERATION;
+    }
+
+    @Override
+    byte kind() {
+        return EntityStore.SHIP;
+    }
+
+    @Override
+    int debris() {
+        return 96;
     }
 
     /**
@@ -64,15 +121,16 @@ public class SpaceShip extends GameObject {
      */
     public void accelerate() {
         // TODO: Re-implement acceleration
-        final double MAX_VELOCITY = 7.0;
-        final double ACCELERATION = 0.2;
+        final long MAX_VELOCITY = Fixed.fromInt(7);
 
-        // Only accelerate if the velocity is not at the max
-        if (Math.sqrt(velocityX*velocityX + velocityY*velocityY)
-                <= MAX_VELOCITY) {
-            velocityX += ACCELERATION * Math.sin(super.theta) * -1;
-            velocityY += ACCELERATION * Math.cos(super.theta);
-        }
+        int velocityX = getFixedVelocityX(), velocityY = getFixedVelocityY();
+
+        // Only accelerate if the velocity is not at the max, comparing the
+        // squares so that no square root is needed
+        if ((long) velocityX*velocityX + (long) velocityY*velocityY
+                <= MAX_VELOCITY*MAX_VELOCITY)
+            setFixedVelocity(velocityX + THRUST_X[heading],
+                    velocityY + THRUST_Y[heading]);
     }
 
     /**
@@ -81,8 +139,73 @@ public class SpaceShip extends GameObject {
      * @param angle {@code -1} to rotate CCW, {@code 1} to rotate CW.
      */
     public void rotate(double angle) {
-        final double ROTATE = 2*Math.PI/45;
-        super.theta += ((int) Math.signum(angle)) * ROTATE;
+        heading = (heading + (int) Math.signum(angle) + HEADINGS) % HEADINGS;
+        setTheta(headingAngle(heading));
+    }
+
+    /**
+     * Returns which of the HEADINGS ways the SpaceShip is facing. Heading 0
+     * is the way it faces when it is created (upwards), and each rotate()
+     * moves one heading.
+     *
+     * @return  The heading, from 0 to {@code HEADINGS - 1}
+     */
+    public int getHeading() {
+        return heading;
+    }
+
+    /**
+     * Returns the heading nearest an orientation.
+     *
+     * @param theta The orientation in radians
+     * @return      The heading, from 0 to {@code HEADINGS - 1}
+     */
+    static int headingOf(double theta) {
+        int heading = (int) Math.round((theta - Math.PI) / ROTATE) % HEADINGS;
+        return heading < 0 ? heading + HEADINGS : heading;
+    }
+
+    /**
+     * Returns the orientation in radians of the given heading.
+     *
+     * @param heading   The heading, from 0 to {@code HEADINGS - 1}
+     * @return          The orientation
+     * @see #getHeading
+     */
+    static double headingAngle(int heading) {
+        return Math.PI + heading * ROTATE;
+    }
+
+    /**
+     * Returns the sine of a heading in fixed point.
+     */
+    static int headingSin(int heading) {
+        return SIN[heading];
+    }
+
+    /**
+     * Returns the cosine of a heading in fixed point.
+     */
+    static int headingCos(int heading) {
+        return COS[heading];
+    }
+
+    /**
+     * Set whether the thrust key is held down, which shows the thrust flame.
+     *
+     * @param thrusting {@code true} if the SpaceShip is thrusting
+     */
+    void setThrusting(boolean thrusting) {
+        this.thrusting = thrusting;
+    }
+
+    /**
+     * Returns whether the thrust key is held down.
+     *
+     * @return  {@code true} if the SpaceShip is thrusting, {@code false} if not
+     */
+    public boolean isThrusting() {
+        return thrusting;
     }
 
     /**
@@ -90,16 +213,90 @@ public class SpaceShip extends GameObject {
      * a random location.
      */
     public void hyperspace() {
-        hsTimer.start();
+        if (!hyperspace_mode)
+            hyperspaceTimer = world.timers.schedule(this, HYPERSPACE_DELAY,
+                    TimerWheel.HYPERSPACE);
         hyperspace_mode = true;
     }
 
+    /**
+     * Returns which player flies this SpaceShip.
+     *
+     * @return  The player, from 0
+     */
+    public int getPlayer() {
+        return player;
+    }
+
+    /**
+     * Mix the state of the SpaceShip that save() saves into a checksum.
+     *
+     * @see World#checksum
+     */
+    long checksum(long h) {
+        h = World.hash(h, getFixedX());
+        h = World.hash(h, getFixedY());
+        h = World.hash(h, getFixedVelocityX());
+        h = World.hash(h, getFixedVelocityY());
+        h = World.hash(h, Double.doubleToLongBits(getTheta()));
+        h = World.hash(h, (isDestroyed() ? 1 : 0) | (hyperspace_mode ? 2 : 0) |
+                (thrusting ? 4 : 0));
+        h = World.hash(h, score);
+        h = World.hash(h, bullets);
+        return World.hash(h, world.timers.ticksLeft(hyperspaceTimer));
+    }
+
+    /**
+     * Save the state of the SpaceShip into its entry of a snapshot.
+     */
+    void save(WorldSnapshot s) {
+        int k = player;
+        s.shipX[k] = getFixedX();
+        s.shipY[k] = getFixedY();
+        s.shipVelocityX[k] = getFixedVelocityX();
+        s.shipVelocityY[k] = getFixedVelocityY();
+        s.shipTheta[k] = getTheta();
+        s.shipIsDestroyed[k] = isDestroyed();
+        s.score[k] = score;
+        s.bullets[k] = bullets;
+        s.hyperspaceTicks[k] = world.timers.ticksLeft(hyperspaceTimer);
+        s.hyperspace[k] = hyperspace_mode;
+        s.thrusting[k] = thrusting;
+    }
+
+    /**
+     * Restore the state saved by save(). The SpaceShip must not be in the
+     * global list, and the timers of the World must have been cleared.
+     */
+    void restore(WorldSnapshot s) {
+        int k = player;
+        heading = headingOf(s.shipTheta[k]);
+        setState(s.shipX[k], s.shipY[k], s.shipVelocityX[k],
+                s.shipVelocityY[k], headingAngle(heading),
+                s.shipIsDestroyed[k]);
+        score = s.score[k];
+        bullets = s.bullets[k];
+        hyperspace_mode = s.hyperspace[k];
+        hyperspaceTimer = hyperspace_mode ? world.timers.schedule(this,
+                s.hyperspaceTicks[k], TimerWheel.HYPERSPACE) : TimerWheel.NONE;
+        thrusting = s.thrusting[k];
+    }
+
+    /**
+     * The hyperspace delay has run out, so bring the SpaceShip back at its
+     * new location.
+     */
+    public void expire() {
+        hyperspaceTimer = TimerWheel.NONE;
+        hyperspace_helper();
+    }
+
     private void hyperspace_helper() {
-        velocityX = velocityY = 0;
-        x = (int) (Math.random() * rightBound);
-        y = (int) (Math.random() * bottomBound);
+        setVelocity(0, 0);
+        int x = (int) (world.random.nextDouble() * world.getWidth());
+        int y = (int) (world.random.nextDouble() * world.getHeight());
+        setLocation(x, y);
         hyperspace_mode = false;
-        hsTimer.stop();
     }
 
     /**
@@ -119,9 +316,9 @@ public class SpaceShip extends GameObject {
      */
     public Bullet fire() {
         if (!isDestroyed() && !hyperspace_mode) {
-            int xBullet = (-1) * (int) Math.round(11 * Math.sin(theta));
-            int yBullet = (int) Math.round(11 * Math.cos(theta));
-            return Bullet.createFriendlyBullet(x + xBullet, y + yBullet, theta);
+            int h = heading;
+            return Bullet.createFromHeading(this, getX() + NOSE_X[h],
+                    getY() + NOSE_Y[h], h);
         }
         return null;
     }
@@ -147,40 +344,24 @@ public class SpaceShip extends GameObject {
      */
     @Override
     public Shape boundingShape() {
+        int x = getX(), y = getY();
         return new Rectangle2D.Float(x-7, y-11, WIDTH, HEIGHT);
     }
     
     /**
      * Draw the object to the screen.
      *
-     * @param g The Graphics context.
+     * @param g     The Graphics context.
+     * @param alpha How far between the previous tick and the current tick to
+     *              draw
      */
     @Override
-    public void draw(Graphics g) {
+    public void draw(Graphics g, float alpha) {
         // Only draw the SpaceShip if it is not destroyed or in hyperspace.
         if (!isDestroyed() || !hyperspace_mode) {
-            Graphics2D g2 = (Graphics2D) g;
-            AffineTransform currentAt = g2.getTransform();
-            g2.setColor(Color.white);
-
-            // Draw the ship
-            int xPoints[] = {x-7, x, x+8};
-            int yPoints[] = {y-12, y+11, y-12};
-            GeneralPath shipShape = new GeneralPath(GeneralPath.WIND_EVEN_ODD);
-
-            shipShape.moveTo(xPoints[0], yPoints[0]);
-            for (int i = 0; i < xPoints.length; i++) {
-                shipShape.lineTo(xPoints[i], yPoints[i]);
-            }
-            shipShape.moveTo(x-5, y-7);
-            shipShape.lineTo(x+6, y-7);
-
-            // Rotate the ship
-            g2.setTransform(AffineTransform.getRotateInstance(super.theta, super.x,
-                    super.y));
-
-            g2.draw(shipShape);
-            g2.setTransform(currentAt);
+            // Copy the pre-rotated ship for the current heading
+            Sprites.INSTANCE.draw(g, getHeading(), thrusting,
+                    getRenderX(alpha), getRenderY(alpha));
         }
         
     }
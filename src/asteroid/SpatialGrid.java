@@ -0,0 +1,185 @@
+package asteroid;
+
+/**
+ * SpatialGrid is a uniform spatial hash over the playing field that is used as
+ * the broad-phase for collision detection. Every GameObject is filed under the
+ * cell that holds its center, so a collision query only has to look at the
+ * 3x3 block of cells around the object instead of every other GameObject.
+ *
+ * The field is a torus (GameObjects that leave one side reappear on the
+ * other), so neighbouring cells wrap around the edges as well.
+ *
+ * @author Daniel Ge
+ */
+class SpatialGrid {
+    // Cells are never smaller than this, even if all GameObjects are tiny.
+    private static final int MIN_CELL_SIZE = 64;
+
+    private int width, height;
+    private int columns, rows;
+
+    // cellHead[c] is the first entity in cell c, next[i] is the entity after
+    // entity i in the same cell. -1 terminates both.
+    private int[] cellHead = new int[0];
+    private int[] next = new int[0];
+    private EntityStore store;
+
+    // Reused by every query on the calling thread so that querying does not
+    // allocate.
+    private final Query query = new Query();
+
+    /**
+     * Clear the grid and file every undestroyed entity in the store. This
+     * should be done once per frame, before any queries, and the store must
+     * not add or remove entities until the queries are done.
+     *
+     * @param store     The entities to put in the grid
+     * @param width     Width of the playing field
+     * @param height    Height of the playing field
+     */
+    public void rebuild(EntityStore store, int width, int height) {
+        this.store = store;
+        this.width = Math.max(width, 1);
+        this.height = Math.max(height, 1);
+
+        // Any two GameObjects whose bounding boxes overlap have centers that
+        // are less than one "largest GameObject" apart, so cells at least
+        // that big guarantee that they are in neighbouring cells.
+        int largest = 0;
+        for (int i = 0; i < store.size; i++) {
+            if (!store.destroyed[i])
+                largest = Math.max(largest,
+                        Math.max(store.width[i], store.height[i]));
+        }
+
+        int cellSize = Math.max(MIN_CELL_SIZE, largest + 1);
+        columns = Math.max(1, this.width / cellSize);
+        rows = Math.max(1, this.height / cellSize);
+
+        if (cellHead.length < columns * rows)
+            cellHead = new int[columns * rows];
+        for (int c = 0; c < columns * rows; c++)
+            cellHead[c] = -1;
+
+        if (next.length < store.size)
+            next = new int[store.x.length];
+
+        // File in reverse so that each cell lists its entities in slot order.
+        for (int i = store.size - 1; i >= 0; i--) {
+            if (store.destroyed[i])
+                continue;
+            int cell = rowOf(Fixed.toInt(store.y[i])) * columns +
+                    columnOf(Fixed.toInt(store.x[i]));
+            next[i] = cellHead[cell];
+            cellHead[cell] = i;
+        }
+    }
+
+    /**
+     * Find every entity in the cells surrounding the given entity, which
+     * includes every entity that could possibly intersect it. The slots of
+     * the entities found are in {@link #candidates()}.
+     *
+     * @param i The slot of the entity to look around
+     * @return  The number of entities found (possibly including {@code i}
+     *          itself)
+     */
+    public int nearby(int i) {
+        return nearby(i, query);
+    }
+
+    /**
+     * Find every entity in the cells surrounding the given entity, using the
+     * buffers of {@code q}. Once the grid is built, any number of threads may
+     * query it at the same time as long as each one has its own Query.
+     *
+     * @param i The slot of the entity to look around
+     * @param q Where to put the slots found, see {@link Query#candidates()}
+     * @return  The number of entities found (possibly including {@code i}
+     *          itself)
+     */
+    public int nearby(int i, Query q) {
+        int count = 0;
+        int numColumns = neighbours(columnOf(Fixed.toInt(store.x[i])),
+                columns, q.columns);
+        int numRows = neighbours(rowOf(Fixed.toInt(store.y[i])), rows,
+                q.rows);
+
+        for (int r = 0; r < numRows; r++) {
+            for (int c = 0; c < numColumns; c++) {
+                int cell = q.rows[r] * columns + q.columns[c];
+                for (int e = cellHead[cell]; e != -1; e = next[e]) {
+                    if (count == q.result.length) {
+                        int[] newResult = new int[count * 2];
+                        System.arraycopy(q.result, 0, newResult, 0, count);
+                        q.result = newResult;
+                    }
+                    q.result[count++] = e;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the slots found by the last call to {@link #nearby}. The array
+     * is reused and is only valid until the next query.
+     *
+     * @return  The slots of the nearby entities
+     */
+    public int[] candidates() {
+        return query.candidates();
+    }
+
+    /**
+     * Fill {@code out} with the distinct cells next to {@code index}
+     * (including itself) in a wrapping row or column of {@code count} cells.
+     *
+     * @return  The number of cells written to {@code out}
+     */
+    private static int neighbours(int index, int count, int[] out) {
+        if (count < 3) {
+            for (int i = 0; i < count; i++)
+                out[i] = i;
+            return count;
+        }
+        out[0] = (index + count - 1) % count;
+        out[1] = index;
+        out[2] = (index + 1) % count;
+        return 3;
+    }
+
+    // GameObjects can be slightly off-field (e.g. a Bullet fired right next to
+    // the edge), so wrap the coordinates the same way GameObject.move() does.
+    private int columnOf(int x) {
+        x %= width;
+        if (x < 0)
+            x += width;
+        return (int) ((long) x * columns / width);
+    }
+
+    private int rowOf(int y) {
+        y %= height;
+        if (y < 0)
+            y += height;
+        return (int) ((long) y * rows / height);
+    }
+
+    /**
+     * The buffers used by a single query.
+     */
+    static final class Query {
+        private int[] result = new int[16];
+        private final int[] columns = new int[3], rows = new int[3];
+
+        /**
+         * Returns the slots found by the last query with this Query. The
+         * array is reused and is only valid until the next query.
+         *
+         * @return  The slots of the nearby entities
+         */
+        int[] candidates() {
+            return result;
+        }
+    }
+}
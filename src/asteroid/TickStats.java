@@ -0,0 +1,203 @@
+package asteroid;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * TickStats collects how long each phase of a tick takes, how many of each
+ * kind of GameObject there are and how many collision tests are done per
+ * tick, and publishes them over JMX. A World only measures itself when it has
+ * a TickStats; measuring takes a few calls to System.nanoTime() per tick.
+ *
+ * Only the thread that steps the World (and renders it) may record, but the
+ * statistics can be read from any thread, e.g. by JConsole.
+ *
+ * @author Daniel Ge
+ * @see World#setStats
+ */
+public class TickStats implements TickStatsMXBean {
+    /**
+     * The name TickStats are registered under.
+     */
+    public static final String OBJECT_NAME = "asteroid:type=TickStats";
+
+    // Phases of a tick
+    static final int INPUT = 0,
+                     COLLISION = 1,
+                     SPAWN_REMOVE = 2,
+                     MOVE = 3,
+                     RENDER = 4;
+    private static final int PHASES = 5;
+
+    private final LatencyHistogram ticks = new LatencyHistogram();
+    private final LatencyHistogram[] phases = new LatencyHistogram[PHASES];
+
+    private volatile int ships, asteroids, bullets;
+    private volatile long collisionTests;
+    private final AtomicLong totalCollisionTests = new AtomicLong();
+
+    /**
+     * Creates a new TickStats with nothing counted.
+     */
+    public TickStats() {
+        for (int p = 0; p < PHASES; p++)
+            phases[p] = new LatencyHistogram();
+    }
+
+    /**
+     * Register with the platform MBeanServer, under {@link #OBJECT_NAME}.
+     *
+     * @throws JMException  if the TickStats cannot be registered, e.g.
+     *                      because another one already is
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    /**
+     * Count how long a phase took.
+     *
+     * @param phase One of the phase constants
+     * @param nanos How long the phase took in nanoseconds
+     */
+    void record(int phase, long nanos) {
+        phases[phase].record(nanos);
+    }
+
+    /**
+     * Count a whole tick, and the state of the World at the end of it.
+     *
+     * @param nanos             How long the tick took in nanoseconds
+     * @param ships             Number of SpaceShips
+     * @param asteroids         Number of Asteroids
+     * @param bullets           Number of Bullets
+     * @param collisionTests    Number of collision tests during the tick
+     */
+    void endTick(long nanos, int ships, int asteroids, int bullets,
+            long collisionTests) {
+        ticks.record(nanos);
+        this.ships = ships;
+        this.asteroids = asteroids;
+        this.bullets = bullets;
+        this.collisionTests = collisionTests;
+        totalCollisionTests.lazySet(totalCollisionTests.get() +
+                collisionTests);
+    }
+
+    public long getTicks() {
+        return ticks.count();
+    }
+
+    public Latency getTickLatency() {
+        return new Latency(ticks);
+    }
+
+    public Latency getInputLatency() {
+        return new Latency(phases[INPUT]);
+    }
+
+    public Latency getCollisionLatency() {
+        return new Latency(phases[COLLISION]);
+    }
+
+    public Latency getSpawnRemoveLatency() {
+        return new Latency(phases[SPAWN_REMOVE]);
+    }
+
+    public Latency getMoveLatency() {
+        return new Latency(phases[MOVE]);
+    }
+
+    public Latency getRenderLatency() {
+        return new Latency(phases[RENDER]);
+    }
+
+    public int getShips() {
+        return ships;
+    }
+
+    public int getAsteroids() {
+        return asteroids;
+    }
+
+    public int getBullets() {
+        return bullets;
+    }
+
+    public long getCollisionTestsLastTick() {
+        return collisionTests;
+    }
+
+    public double getCollisionTestsPerTick() {
+        long n = ticks.count();
+        return n == 0 ? 0.0 : (double) totalCollisionTests.get() / n;
+    }
+
+    public void reset() {
+        ticks.reset();
+        for (LatencyHistogram h : phases)
+            h.reset();
+        totalCollisionTests.set(0);
+    }
+
+    /**
+     * The distribution of the duration of a phase, in microseconds.
+     */
+    public static final class Latency {
+        private final long count;
+        private final double p50, p99, p999, max;
+
+        Latency(LatencyHistogram h) {
+            count = h.count();
+            p50 = h.percentile(0.50) / 1000.0;
+            p99 = h.percentile(0.99) / 1000.0;
+            p999 = h.percentile(0.999) / 1000.0;
+            max = h.max() / 1000.0;
+        }
+
+        /**
+         * @return  The number of times the phase was counted
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return  The median duration
+         */
+        public double getP50() {
+            return p50;
+        }
+
+        /**
+         * @return  The 99th percentile of the duration
+         */
+        public double getP99() {
+            return p99;
+        }
+
+        /**
+         * @return  The 99.9th percentile of the duration
+         */
+        public double getP999() {
+            return p999;
+        }
+
+        /**
+         * @return  The longest duration
+         */
+        public double getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("p50 %.1f us, p99 %.1f us, p99.9 %.1f us, " +
+                    "max %.1f us (%d)", p50, p99, p999, max, count);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package asteroid;
+
+/**
+ * The management interface of TickStats, as shown in JConsole under
+ * {@code asteroid:type=TickStats}. Durations are in microseconds.
+ *
+ * @author Daniel Ge
+ * @see TickStats
+ */
+public interface TickStatsMXBean {
+    /**
+     * Returns the number of ticks counted.
+     *
+     * @return  The number of ticks
+     */
+    long getTicks();
+
+    /**
+     * Returns the latency of whole ticks.
+     *
+     * @return  The latency of whole ticks
+     */
+    TickStats.Latency getTickLatency();
+
+    /**
+     * Returns the latency of counting down delays and handling the input.
+     *
+     * @return  The latency of the input phase
+     */
+    TickStats.Latency getInputLatency();
+
+    /**
+     * Returns the latency of finding and resolving collisions.
+     *
+     * @return  The latency of the collision phase
+     */
+    TickStats.Latency getCollisionLatency();
+
+    /**
+     * Returns the latency of removing destroyed GameObjects and adding broken
+     * Asteroids.
+     *
+     * @return  The latency of the spawn/remove phase
+     */
+    TickStats.Latency getSpawnRemoveLatency();
+
+    /**
+     * Returns the latency of moving every GameObject.
+     *
+     * @return  The latency of the move phase
+     */
+    TickStats.Latency getMoveLatency();
+
+    /**
+     * Returns the latency of drawing a frame.
+     *
+     * @return  The latency of rendering
+     */
+    TickStats.Latency getRenderLatency();
+
+    /**
+     * Returns the number of SpaceShips after the last tick.
+     *
+     * @return  The number of SpaceShips
+     */
+    int getShips();
+
+    /**
+     * Returns the number of Asteroids after the last tick.
+     *
+     * @return  The number of Asteroids
+     */
+    int getAsteroids();
+
+    /**
+     * Returns the number of Bullets after the last tick.
+     *
+     * @return  The number of Bullets
+     */
+    int getBullets();
+
+    /**
+     * Returns the number of pairs of GameObjects tested for collision in the
+     * last tick.
+     *
+     * @return  The number of collision tests
+     */
+    long getCollisionTestsLastTick();
+
+    /**
+     * Returns the average number of pairs of GameObjects tested for collision
+     * per tick.
+     *
+     * @return  The average number of collision tests
+     */
+    double getCollisionTestsPerTick();
+
+    /**
+     * Forget everything counted so far.
+     */
+    void reset();
+}
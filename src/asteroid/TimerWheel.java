@@ -0,0 +1,235 @@
+package asteroid;
+
+import java.util.Arrays;
+
+/**
+ * TimerWheel runs the delayed actions of a World: Bullets running out, the
+ * SpaceShip coming back from hyperspace, the next level and the end of the
+ * game. It is a hashed timing wheel driven by the ticks of the World rather
+ * than by the clock, so the actions happen at exactly the same tick whether
+ * the game is played in real time, paused, fast-forwarded or run headless.
+ *
+ * Scheduling and cancelling a timer are O(1) and do not allocate once the
+ * wheel has grown to the busiest moment of the game. Timers due at the same
+ * tick fire in order of priority, and timers of the same priority in the
+ * order they were scheduled.
+ *
+ * @author Daniel Ge
+ */
+final class TimerWheel {
+    /**
+     * Something that happens once a timer runs out.
+     */
+    interface Timeout {
+        /**
+         * Called during the tick the timer runs out.
+         */
+        void expire();
+    }
+
+    /**
+     * Returned instead of a timer, e.g. by owners that have none running.
+     */
+    static final int NONE = -1;
+
+    // Priorities of the timers of a World, in the order they fire
+    static final int BULLET = 0,
+                     HYPERSPACE = 1,
+                     LEVEL = 2,
+                     GAME_OVER = 3;
+    private static final int PRIORITIES = 4;
+
+    // Number of slots of the wheel. Timers further away than this wait in
+    // their slot until the wheel comes round to their tick.
+    private static final int SLOTS = 64, SLOT_MASK = SLOTS - 1;
+
+    // A timer is the index of its entry plus the generation of the entry, so
+    // that a timer that has fired or been cancelled cannot cancel whatever
+    // reuses its entry.
+    private static final int INDEX_BITS = 20, INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+
+    // The entries, as singly-linked lists per slot and a list of free ones.
+    // An entry that has fired or been cancelled has no Timeout.
+    private long[] deadline = new long[0];
+    private Timeout[] timeout = new Timeout[0];
+    private byte[] priority = new byte[0];
+    private int[] next = new int[0];
+    private int[] generation = new int[0];
+    private int free = NONE;
+
+    private final int[] head = new int[SLOTS], tail = new int[SLOTS];
+
+    // Number of times advance() has been called
+    private long now;
+
+    /**
+     * Creates a new, empty TimerWheel.
+     */
+    TimerWheel() {
+        Arrays.fill(head, NONE);
+        Arrays.fill(tail, NONE);
+    }
+
+    /**
+     * Start a timer.
+     *
+     * @param t         What to do once the timer runs out
+     * @param delay     The timer runs out during the delay-th call to
+     *                  advance() from now; at least 1
+     * @param prio      One of the priority constants
+     * @return          The timer, to cancel it with
+     */
+    int schedule(Timeout t, int delay, int prio) {
+        if (free == NONE)
+            grow();
+        int e = free;
+        free = next[e];
+
+        deadline[e] = now + Math.max(delay, 1);
+        timeout[e] = t;
+        priority[e] = (byte) prio;
+        next[e] = NONE;
+
+        int s = (int) (deadline[e] & SLOT_MASK);
+        if (head[s] == NONE)
+            head[s] = e;
+        else
+            next[tail[s]] = e;
+        tail[s] = e;
+        return (generation[e] << INDEX_BITS) | e;
+    }
+
+    /**
+     * Stop a timer, if it has not run out yet.
+     *
+     * @param timer A timer returned by schedule(), or NONE
+     */
+    void cancel(int timer) {
+        int e = entry(timer);
+        if (e != NONE)
+            timeout[e] = null;
+    }
+
+    /**
+     * Returns the number of calls to advance() until a timer runs out.
+     *
+     * @param timer A timer returned by schedule(), or NONE
+     * @return      The number of calls, or 0 if the timer has already run
+     *              out or been cancelled
+     */
+    int ticksLeft(int timer) {
+        int e = entry(timer);
+        return e == NONE ? 0 : (int) (deadline[e] - now);
+    }
+
+    /**
+     * Advance the wheel by one tick, and fire every timer that runs out.
+     */
+    void advance() {
+        now++;
+        int s = (int) (now & SLOT_MASK);
+        if (head[s] == NONE)
+            return;
+
+        // A Timeout may schedule more timers, even into this slot, but those
+        // are due one turn of the wheel later at the earliest.
+        for (int p = 0; p < PRIORITIES; p++) {
+            for (int e = head[s]; e != NONE; e = next[e]) {
+                if (deadline[e] == now && priority[e] == p &&
+                        timeout[e] != null) {
+                    Timeout t = timeout[e];
+                    timeout[e] = null;
+                    t.expire();
+                }
+            }
+        }
+
+        // Free every entry of the slot that has fired or been cancelled
+        int previous = NONE;
+        int e = head[s];
+        while (e != NONE) {
+            int following = next[e];
+            if (timeout[e] == null) {
+                if (previous == NONE)
+                    head[s] = following;
+                else
+                    next[previous] = following;
+                release(e);
+            }
+            else
+                previous = e;
+            e = following;
+        }
+        tail[s] = previous;
+    }
+
+    /**
+     * Cancel every timer, and set the number of ticks the wheel is at.
+     *
+     * @param tick  The tick of the World, which advance() moves on from
+     */
+    void clear(long tick) {
+        for (int s = 0; s < SLOTS; s++) {
+            int e = head[s];
+            while (e != NONE) {
+                int following = next[e];
+                timeout[e] = null;
+                release(e);
+                e = following;
+            }
+            head[s] = tail[s] = NONE;
+        }
+        now = tick;
+    }
+
+    /**
+     * Returns the entry of a timer that is still running, or NONE.
+     */
+    private int entry(int timer) {
+        if (timer == NONE)
+            return NONE;
+        int e = timer & INDEX_MASK;
+        if (e >= timeout.length || generation[e] != timer >>> INDEX_BITS ||
+                timeout[e] == null)
+            return NONE;
+        return e;
+    }
+
+    private void release(int e) {
+        generation[e] = (generation[e] + 1) & GENERATION_MASK;
+        next[e] = free;
+        free = e;
+    }
+
+    /**
+     * Double the number of entries, and put the new ones on the free list.
+     */
+    private void grow() {
+        int size = deadline.length;
+        int capacity = Math.max(size * 2, 16);
+        if (capacity > INDEX_MASK + 1)
+            throw new IllegalStateException("Too many timers");
+
+        long[] newDeadline = new long[capacity];
+        Timeout[] newTimeout = new Timeout[capacity];
+        byte[] newPriority = new byte[capacity];
+        int[] newNext = new int[capacity];
+        int[] newGeneration = new int[capacity];
+        System.arraycopy(deadline, 0, newDeadline, 0, size);
+        System.arraycopy(timeout, 0, newTimeout, 0, size);
+        System.arraycopy(priority, 0, newPriority, 0, size);
+        System.arraycopy(next, 0, newNext, 0, size);
+        System.arraycopy(generation, 0, newGeneration, 0, size);
+        deadline = newDeadline;
+        timeout = newTimeout;
+        priority = newPriority;
+        next = newNext;
+        generation = newGeneration;
+
+        for (int e = capacity - 1; e >= size; e--) {
+            next[e] = free;
+            free = e;
+        }
+    }
+}
@@ -0,0 +1,1045 @@
+package asteroid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * World holds the complete state of a game of Asteroids and advances it one
+ * tick at a time. It does not depend on AWT or Swing in any way, so it can be
+ * simulated headless and as fast as the CPU allows; Space only draws it and
+ * turns keystrokes into input for {@link #step}.
+ *
+ * A World has a SpaceShip for each player. The players play together: their
+ * Bullets only hit Asteroids, and the game is over once every SpaceShip has
+ * been destroyed.
+ *
+ * @author Daniel Ge
+ */
+public class World {
+    // Length of a tick in milliseconds when played in real time.
+    public static final int INTERVAL = 25;
+
+    // Bits of the input mask passed to step()
+    public static final int INPUT_LEFT = 1,
+                            INPUT_RIGHT = 2,
+                            INPUT_UP = 4,
+                            INPUT_FIRE = 8,
+                            INPUT_HYPERSPACE = 16;
+
+    // Delays (in ticks) before advancing the level and before the game is
+    // over once the SpaceShip is destroyed.
+    private static final int LEVEL_DELAY = 1000 / INTERVAL,
+                             GAME_OVER_DELAY = 1000 / INTERVAL;
+    private static final int MAX_ASTEROIDS = 12;
+
+    // The largest width or height of a playing field, well below where the
+    // fixed-point coordinates of a GameObject would overflow
+    static final int MAX_SIZE = 1 << 14;
+
+    // Tries at placing a new Asteroid away from the SpaceShips
+    private static final int SPAWN_TRIES = 16;
+
+    private final int width, height;
+
+    // Every random decision in the World is drawn from here, so that the
+    // same seed and the same input always give the same game.
+    private final long seed;
+    final WorldRandom random;
+
+    // Every GameObject currently in the World, and the broad-phase used to
+    // find collisions between them.
+    final EntityStore entities = new EntityStore();
+    private final SpatialGrid grid = new SpatialGrid();
+
+    // Asteroids created by collisions during this tick, reused every tick.
+    private final List<Asteroid> brokenAsteroids = new ArrayList<Asteroid>();
+
+    // Collisions found during this tick, reused every tick. In parallel mode,
+    // each chunk of CHUNK_SIZE slots has its own.
+    private static final int CHUNK_SIZE = 1024;
+    private final HitList hits = new HitList();
+    private final SpatialGrid.Query query = new SpatialGrid.Query();
+    private HitList[] chunkHits = new HitList[0];
+    private SpatialGrid.Query[] chunkQueries = new SpatialGrid.Query[0];
+
+    // Runs the collision and movement passes in parallel, or null to run
+    // them on the calling thread.
+    private ForkJoinPool pool;
+
+    // Where the duration of each phase of a tick goes, or null to not measure
+    // it. phaseStart is when the current phase started.
+    private TickStats stats;
+    private long phaseStart;
+    private long collisionTests;
+
+    // Where the checksum of every tick goes, or null to not compute it
+    private ChecksumLog checksums;
+
+    // Where the debris of destroyed GameObjects goes, or null for none. Debris
+    // is only made the first time a tick is played (ticks up to playedTicks
+    // may be played again after restoreState()), so that it does not appear
+    // twice, and is not part of the state of the World.
+    private ParticleSystem particles;
+    private long playedTicks;
+    private boolean effects;
+
+    // The SpaceShip of each player
+    private final SpaceShip[] ships;
+
+    // Number of undestroyed HostileObjects, including broken Asteroids that
+    // have not been added to the global list yet.
+    int hostilesLeft;
+
+    // Number of Bullets each SpaceShip may have in the World.
+    private int maxBullets = 4;
+
+    // Every delayed action, driven by step(). Must be created before the
+    // BulletPool, whose Bullets cancel their timers.
+    final TimerWheel timers = new TimerWheel();
+
+    // Destroyed Bullets waiting to be fired again.
+    final BulletPool bulletPool = new BulletPool(this, 8);
+
+    // The input of each player in the previous tick, used so that holding
+    // down a key only fires (or enters hyperspace) once.
+    private final int[] lastInput;
+    private final int[] oneInput = new int[1];
+
+    // Reused by restoreState(): the GameObjects the World held before, whose
+    // Asteroids are put back into the same slots where they fit, and which
+    // players have a SpaceShip in the snapshot.
+    private GameObject[] restoring = new GameObject[0];
+    private final boolean[] restoredShips;
+
+    private long tick;
+    private int level;
+    private boolean generatingLevel;
+    private int levelTimer = TimerWheel.NONE;
+    private boolean gameOver;
+    private int gameOverTimer = TimerWheel.NONE;
+
+    // The delayed advancement into the next level and end of the game
+    private final TimerWheel.Timeout nextLevel = new TimerWheel.Timeout() {
+        public void expire() {
+            levelTimer = TimerWheel.NONE;
+            nextLevel();
+        }
+    };
+    private final TimerWheel.Timeout endGame = new TimerWheel.Timeout() {
+        public void expire() {
+            gameOverTimer = TimerWheel.NONE;
+            gameOver = true;
+        }
+    };
+
+    /**
+     * Creates a new World of the given size and sets up the first level of a
+     * new game with a new random seed.
+     *
+     * @param width     Width of the playing field
+     * @param height    Height of the playing field
+     */
+    public World(int width, int height) {
+        this(width, height, WorldRandom.newSeed());
+    }
+
+    /**
+     * Creates a new World of the given size and sets up the first level of a
+     * new game. Two Worlds created with the same seed play out exactly the
+     * same way if they are given the same input.
+     *
+     * @param width     Width of the playing field
+     * @param height    Height of the playing field
+     * @param seed      Seed for every random decision in the game
+     */
+    public World(int width, int height, long seed) {
+        this(width, height, seed, 1);
+    }
+
+    /**
+     * Creates a new World of the given size with a SpaceShip for each player,
+     * spread out evenly across the middle of the playing field, and sets up
+     * the first level of a new game.
+     *
+     * @param width     Width of the playing field
+     * @param height    Height of the playing field
+     * @param seed      Seed for every random decision in the game
+     * @param players   Number of players, at least 1
+     * @throws IllegalArgumentException if the size or {@code players} is out
+     *                                  of range
+     */
+    public World(int width, int height, long seed, int players) {
+        if (!isValidSize(width, height))
+            throw new IllegalArgumentException("Bad size: " + width + "x" +
+                    height);
+        if (players < 1 || players > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Bad number of players: " +
+                    players);
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.random = new WorldRandom(seed);
+
+        level = 1;
+        ships = new SpaceShip[players];
+        lastInput = new int[players];
+        restoredShips = new boolean[players];
+        for (int k = 0; k < players; k++) {
+            ships[k] = new SpaceShip(this, k,
+                    width * (2 * k + 1) / (2 * players), height/2);
+            ships[k].addToGlobalList();
+        }
+        generateAsteroids(level);
+        generatingLevel = false;
+    }
+
+    /**
+     * Advance the World by one tick, with input for the first player only.
+     *
+     * @param input The keys held down during this tick, as a combination of
+     *              the {@code INPUT_} bits.
+     */
+    public void step(int input) {
+        oneInput[0] = input;
+        step(oneInput);
+    }
+
+    /**
+     * Advance the World by one tick.
+     *
+     * @param inputs    The keys each player held down during this tick, as a
+     *                  combination of the {@code INPUT_} bits. Players past
+     *                  the end of the array hold down no keys.
+     */
+    public void step(int[] inputs) {
+        long tickStart = 0;
+        if (stats != null)
+            tickStart = phaseStart = System.nanoTime();
+        collisionTests = 0;
+        effects = particles != null && tick >= playedTicks;
+
+        advanceTimers();
+        for (int k = 0; k < ships.length; k++)
+            performKeyAction(k, k < inputs.length ? inputs[k] : 0);
+        endPhase(TickStats.INPUT);
+        globalUpdate();
+
+        // Delays the advancement into the next level.
+        boolean shipsLeft = false;
+        for (SpaceShip ship : ships)
+            shipsLeft |= !ship.isDestroyed();
+        if (hostilesLeft == 0 && shipsLeft && !generatingLevel) {
+            generatingLevel = true;
+            levelTimer = timers.schedule(nextLevel, LEVEL_DELAY,
+                    TimerWheel.LEVEL);
+        }
+
+        // Delays the end of the game
+        if (!shipsLeft && gameOverTimer == TimerWheel.NONE && !gameOver) {
+            gameOverTimer = timers.schedule(endGame, GAME_OVER_DELAY,
+                    TimerWheel.GAME_OVER);
+        }
+
+        tick++;
+        if (effects) {
+            particles.update(width, height);
+            playedTicks = tick;
+        }
+        if (checksums != null)
+            checksums.add(tick, checksum());
+
+        if (stats != null) {
+            stats.endTick(System.nanoTime() - tickStart,
+                    entities.count(EntityStore.SHIP),
+                    entities.count(EntityStore.ASTEROID),
+                    entities.count(EntityStore.BULLET), collisionTests);
+        }
+    }
+
+    /**
+     * Count the time since the end of the previous phase as the given phase,
+     * if the World is being measured.
+     *
+     * @param phase One of the TickStats phase constants
+     */
+    private void endPhase(int phase) {
+        if (stats != null) {
+            long now = System.nanoTime();
+            stats.record(phase, now - phaseStart);
+            phaseStart = now;
+        }
+    }
+
+    /**
+     * Advance the timers by one tick, and perform the delayed actions that
+     * are due: Bullets run out, then the SpaceShip comes back from
+     * hyperspace, then the next level starts, then the game ends.
+     */
+    private void advanceTimers() {
+        timers.advance();
+    }
+
+    /**
+     * Performs actions based on which keys are pushed down. Allows for
+     * simultaneous key-presses.
+     *
+     * @param player    The player whose SpaceShip to control
+     * @param input     The keys held down during this tick
+     */
+    private void performKeyAction(int player, int input) {
+        SpaceShip spaceShip = ships[player];
+        int pressed = input & ~lastInput[player];
+        lastInput[player] = input;
+
+        if ((input & INPUT_LEFT) != 0)
+            spaceShip.rotate(-1);
+        if ((input & INPUT_RIGHT) != 0)
+            spaceShip.rotate(1);
+        spaceShip.setThrusting((input & INPUT_UP) != 0);
+        if ((input & INPUT_UP) != 0)
+            spaceShip.accelerate();
+        // Disallows the user from firing multiple bullets by holding down
+        // the fire key.
+        if ((pressed & INPUT_FIRE) != 0) {
+            Bullet b = spaceShip.fire();
+            if (b != null)
+                b.addToGlobalList();
+        }
+        if ((pressed & INPUT_HYPERSPACE) != 0)
+            spaceShip.hyperspace();
+    }
+    
+    /**
+     * For each GameObject, update its position and then destroy them as
+     * necessary.
+     */
+    private void globalUpdate() {
+        brokenAsteroids.clear();
+        grid.rebuild(entities, width, height);
+
+        // Look for collisions and set GameObjects for destruction as necessary.
+        // Finding what a GameObject hits does not change the World, so in
+        // parallel mode it is done for every GameObject at once, one chunk of
+        // slots per task. The hits are then resolved in slot order, exactly
+        // as the serial loop below does, so both modes give the same result.
+        int chunks = (entities.size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (pool != null && chunks > 1) {
+            prepareChunks(chunks);
+            pool.invoke(new FindHitsTask(0, chunks));
+            for (int c = 0; c < chunks; c++) {
+                collisionTests += chunkHits[c].tests;
+                resolve(chunkHits[c]);
+            }
+        }
+        else {
+            for (int i = 0; i < entities.size; i++) {
+                if (entities.destroyed[i])
+                    continue;
+                hits.clear();
+                collisionTests += findHits(i, query, hits);
+                resolve(hits);
+            }
+        }
+        endPhase(TickStats.COLLISION);
+
+        // Remove destroyed objects, add the new broken asteroids to the global
+        // set of objects and update the movements of all of them.
+        entities.removeDestroyed();
+        for (Asteroid a : brokenAsteroids)
+            a.addToGlobalList();
+        endPhase(TickStats.SPAWN_REMOVE);
+
+        if (pool != null && entities.size > CHUNK_SIZE)
+            pool.invoke(new MoveTask(0, entities.size));
+        else
+            entities.moveAll(width, height);
+        endPhase(TickStats.MOVE);
+    }
+
+    /**
+     * Find every GameObject that the GameObject in slot i collides with, in
+     * the order that they would be hit, and add them to {@code out}. Only
+     * reads the World, so it is safe to call from several threads at once
+     * (with a Query and HitList per thread).
+     *
+     * @param i     The slot of the GameObject
+     * @param q     The buffers to query the grid with
+     * @param out   Where to add the collisions
+     * @return      The number of GameObjects tested for collision
+     */
+    private int findHits(int i, SpatialGrid.Query q, HitList out) {
+        int count = 0;
+        if (entities.kind[i] == EntityStore.BULLET) {
+            boolean friendly = ((Bullet) entities.views[i]).isFriendly();
+
+            /* A Bullet collides with any Asteroid it touches, and with the
+             * SpaceShip if the bullet was fired by an enemy. GameObjects
+             * cannot collide with a SpaceShip in hyperspace.
+             */
+            count = grid.nearby(i, q);
+            int[] nearby = q.candidates();
+            for (int n = 0; n < count; n++) {
+                int t = nearby[n];
+                if (entities.kind[t] == EntityStore.ASTEROID &&
+                        entities.intersect(i, t))
+                    out.add(i, t);
+                else if (entities.kind[t] == EntityStore.SHIP && !friendly &&
+                        !((SpaceShip) entities.views[t]).inHyperspace() &&
+                        entities.intersect(i, t))
+                    out.add(i, t);
+            }
+        }
+
+        /*
+         * Any collisions with the SpaceShip will destroy the SpaceShip,
+         * unless it is in hyperspace.
+         */
+        else if (entities.kind[i] == EntityStore.SHIP &&
+                !((SpaceShip) entities.views[i]).inHyperspace()) {
+            count = grid.nearby(i, q);
+            int[] nearby = q.candidates();
+            for (int n = 0; n < count; n++) {
+                int h = nearby[n];
+                if (entities.hostile[h] && entities.intersect(h, i))
+                    out.add(i, h);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Resolve the collisions found by findHits(). Each GameObject that has
+     * not been destroyed yet collides with the first of its hits that has not
+     * been destroyed yet.
+     *
+     * @param hits  The collisions, grouped by slot in increasing slot order
+     */
+    private void resolve(HitList hits) {
+        int k = 0;
+        while (k < hits.size) {
+            int i = hits.slot[k];
+            int end = k + 1;
+            while (end < hits.size && hits.slot[end] == i)
+                end++;
+
+            if (!entities.destroyed[i]) {
+                for (int n = k; n < end; n++) {
+                    int t = hits.target[n];
+                    if (!entities.destroyed[t]) {
+                        collide(i, t);
+                        break;
+                    }
+                }
+            }
+            k = end;
+        }
+    }
+
+    /**
+     * Destroy the GameObjects in slots i and t, which collide, and break and
+     * score the Asteroid if there is one.
+     *
+     * @param i The slot of a Bullet or the SpaceShip
+     * @param t The slot of what it collides with
+     */
+    private void collide(int i, int t) {
+        // Collisions between a target and a Bullet destroys both depending
+        // on the circumstances.
+        if (entities.kind[i] == EntityStore.BULLET) {
+            Bullet bul = (Bullet) entities.views[i];
+            GameObject target = entities.views[t];
+            target.destroy();
+            bul.destroy();
+            explode(t);
+
+            if (target instanceof Asteroid) {
+                // Broken Asteroids do not automatically get added to the
+                // global list, so we collect them here.
+                List<Asteroid> temp = ((Asteroid) target).breakAsteroid();
+                if (temp != null)
+                    brokenAsteroids.addAll(temp);
+
+                /* In the future, after saucers will be implemented, only
+                 * collisions from bullets fired by the SpaceShip will add to
+                 * the score.
+                 */
+                if (bul.isFriendly())
+                    bul.getOwner().addScore(((Asteroid) target).getScore());
+            }
+        }
+        else {
+            SpaceShip ship = (SpaceShip) entities.views[i];
+            HostileObject hostile = (HostileObject) entities.views[t];
+            hostile.destroy();
+            ship.destroy();
+            explode(t);
+            explode(i);
+
+            if (hostile instanceof Asteroid) {
+                List<Asteroid> temp = ((Asteroid) hostile).breakAsteroid();
+                if (temp != null)
+                    brokenAsteroids.addAll(temp);
+            }
+
+            // Since collisions with SpaceShips destroy the HostileObject, we
+            // will add the score.
+            ship.addScore(hostile.getScore());
+        }
+    }
+
+    /**
+     * Scatter debris from the GameObject in slot i, which has just been
+     * destroyed, if the World has a ParticleSystem.
+     */
+    private void explode(int i) {
+        if (!effects)
+            return;
+        int count = entities.views[i].debris();
+        if (count > 0)
+            particles.explode(entities.x[i], entities.y[i],
+                    entities.velocityX[i], entities.velocityY[i], count);
+    }
+
+    /**
+     * Make sure there is a Query and a HitList for each chunk of slots.
+     */
+    private void prepareChunks(int chunks) {
+        if (chunkHits.length < chunks) {
+            HitList[] newHits = new HitList[chunks];
+            SpatialGrid.Query[] newQueries = new SpatialGrid.Query[chunks];
+            System.arraycopy(chunkHits, 0, newHits, 0, chunkHits.length);
+            System.arraycopy(chunkQueries, 0, newQueries, 0,
+                    chunkQueries.length);
+            for (int c = chunkHits.length; c < chunks; c++) {
+                newHits[c] = new HitList();
+                newQueries[c] = new SpatialGrid.Query();
+            }
+            chunkHits = newHits;
+            chunkQueries = newQueries;
+        }
+    }
+
+    /**
+     * Finds the hits of the chunks {@code [from, to)}, splitting them between
+     * threads.
+     */
+    @SuppressWarnings("serial")
+    private final class FindHitsTask extends RecursiveAction {
+        private final int from, to;
+
+        FindHitsTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new FindHitsTask(from, mid),
+                          new FindHitsTask(mid, to));
+                return;
+            }
+
+            HitList out = chunkHits[from];
+            SpatialGrid.Query q = chunkQueries[from];
+            out.clear();
+            int end = Math.min((from + 1) * CHUNK_SIZE, entities.size);
+            for (int i = from * CHUNK_SIZE; i < end; i++) {
+                if (!entities.destroyed[i])
+                    out.tests += findHits(i, q, out);
+            }
+        }
+    }
+
+    /**
+     * Moves the slots {@code [from, to)}, splitting them between threads.
+     */
+    @SuppressWarnings("serial")
+    private final class MoveTask extends RecursiveAction {
+        private final int from, to;
+
+        MoveTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MoveTask(from, mid), new MoveTask(mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++)
+                entities.move(i, width, height);
+        }
+    }
+
+    /**
+     * A list of collisions: GameObject slot[k] hits GameObject target[k].
+     * tests counts the collision tests done to find them.
+     */
+    private static final class HitList {
+        int[] slot = new int[16], target = new int[16];
+        int size;
+        long tests;
+
+        void add(int i, int t) {
+            if (size == slot.length) {
+                int[] newSlot = new int[size * 2], newTarget = new int[size * 2];
+                System.arraycopy(slot, 0, newSlot, 0, size);
+                System.arraycopy(target, 0, newTarget, 0, size);
+                slot = newSlot;
+                target = newTarget;
+            }
+            slot[size] = i;
+            target[size] = t;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+            tests = 0;
+        }
+    }
+
+    /**
+     * Create new Asteroids in a fixed radius around the SpaceShips. The number
+     * of asteroids is based on what level it is.
+     *
+     * Each Asteroid comes in on a circle around a live SpaceShip (taking turns
+     * if there are several), and is drawn again if it lands closer than the
+     * radius of the circle to any live SpaceShip, e.g. because it wrapped
+     * around the field. There are only so many tries, after which the place
+     * farthest from the SpaceShips is taken, so that every World with the
+     * same seed places the Asteroids the same way.
+     *
+     * @param lvl   the next level
+     */
+    private void generateAsteroids (int lvl) {
+        int numAsteroids = lvl + 3;
+        if (numAsteroids > MAX_ASTEROIDS)
+            numAsteroids = MAX_ASTEROIDS;
+
+        final int RADIUS = width / 2;
+        final long SAFE_DISTANCE = (long) RADIUS * RADIUS;
+        int live = 0;
+        for (SpaceShip ship : ships)
+            if (!ship.isDestroyed())
+                live++;
+
+        for (int n = 0; n < numAsteroids; n++) {
+            SpaceShip center = liveShip(live == 0 ? n : n % live);
+            int bestX = 0, bestY = 0;
+            long bestDistance = -1;
+            for (int t = 0; t < SPAWN_TRIES && bestDistance < SAFE_DISTANCE;
+                    t++) {
+                int angle = GameObject.generateAngleIndex(random);
+                int x = wrap(center.getX() + Fixed.toInt(
+                        Fixed.mul(Fixed.fromInt(RADIUS), Fixed.cos(angle))),
+                        width);
+                int y = wrap(center.getY() + Fixed.toInt(
+                        Fixed.mul(Fixed.fromInt(RADIUS), Fixed.sin(angle))),
+                        height);
+                long distance = distanceToShips(x, y);
+                if (distance > bestDistance) {
+                    bestX = x;
+                    bestY = y;
+                    bestDistance = distance;
+                }
+            }
+
+            Asteroid.createBigAsteroid(this, bestX, bestY).addToGlobalList();
+        }
+    }
+
+    /**
+     * Returns the k-th SpaceShip that is not destroyed, or ships[k] if all of
+     * them are.
+     */
+    private SpaceShip liveShip(int k) {
+        for (SpaceShip ship : ships)
+            if (!ship.isDestroyed() && k-- == 0)
+                return ship;
+        return ships[k % ships.length];
+    }
+
+    /**
+     * Returns the square of the distance from a point to the nearest live
+     * SpaceShip, the short way around the edges of the field.
+     */
+    private long distanceToShips(int x, int y) {
+        long nearest = Long.MAX_VALUE;
+        for (SpaceShip ship : ships) {
+            if (ship.isDestroyed())
+                continue;
+            int dx = Math.abs(x - ship.getX());
+            int dy = Math.abs(y - ship.getY());
+            dx = Math.min(dx, width - dx);
+            dy = Math.min(dy, height - dy);
+            nearest = Math.min(nearest, (long) dx * dx + (long) dy * dy);
+        }
+        return nearest;
+    }
+
+    /**
+     * Returns a coordinate moved onto the field, from 0 to size - 1.
+     */
+    private static int wrap(int v, int size) {
+        v %= size;
+        return v < 0 ? v + size : v;
+    }
+
+    /**
+     * Advance the level and generate a new environment for it.
+     * This happens at the end of the level delay.
+     */
+    private void nextLevel() {
+        level++;
+        generateAsteroids(level);
+        generatingLevel = false;
+    }
+
+    /**
+     * Returns whether a World can be made of the given size, for checking
+     * sizes read from a file or the network.
+     *
+     * @param width     Width of the playing field
+     * @param height    Height of the playing field
+     * @return          {@code true} if both are from 1 to MAX_SIZE
+     */
+    static boolean isValidSize(int width, int height) {
+        return width > 0 && width <= MAX_SIZE &&
+                height > 0 && height <= MAX_SIZE;
+    }
+
+    /**
+     * Returns the width of the playing field.
+     *
+     * @return  The width of the playing field
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the playing field.
+     *
+     * @return  The height of the playing field
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the seed the World was created with.
+     *
+     * @return  The seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the first player's SpaceShip. It is returned even after it has
+     * been destroyed.
+     *
+     * @return  The SpaceShip
+     */
+    public SpaceShip getSpaceShip() {
+        return ships[0];
+    }
+
+    /**
+     * Returns a player's SpaceShip. It is returned even after it has been
+     * destroyed.
+     *
+     * @param player    The player, from 0 to {@code getPlayers() - 1}
+     * @return          The SpaceShip
+     */
+    public SpaceShip getSpaceShip(int player) {
+        return ships[player];
+    }
+
+    /**
+     * Returns the number of players, each with their own SpaceShip.
+     *
+     * @return  The number of players
+     */
+    public int getPlayers() {
+        return ships.length;
+    }
+
+    /**
+     * Returns the number of GameObjects currently in the World.
+     *
+     * @return  The number of GameObjects
+     */
+    public int size() {
+        return entities.size();
+    }
+
+    /**
+     * Returns the i-th GameObject in the World. The order of the GameObjects
+     * changes from tick to tick.
+     *
+     * @param i Index of the GameObject, from 0 to {@code size() - 1}
+     * @return  The GameObject
+     */
+    public GameObject get(int i) {
+        return entities.get(i);
+    }
+
+    /**
+     * Returns the current level.
+     *
+     * @return  The current level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns the number of ticks simulated so far.
+     *
+     * @return  The number of ticks simulated so far
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns whether the game is over, which happens a short while after the
+     * last SpaceShip is destroyed.
+     *
+     * @return  {@code true} if the game is over, {@code false} if not
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Returns a 64-bit hash of the complete state of the World, i.e. of
+     * everything saveState() saves but the previous positions: every
+     * GameObject in slot order (which is the same on every run), the
+     * SpaceShips, the level, the timers and the random state. Worlds that
+     * play out the same way have the same checksum, so comparing the
+     * checksums of two copies of a game tick by tick finds the first tick
+     * they went apart.
+     *
+     * @return  The checksum
+     */
+    public long checksum() {
+        long h = hash(0, tick);
+        h = hash(h, level);
+        h = hash(h, (generatingLevel ? 1 : 0) | (gameOver ? 2 : 0));
+        h = hash(h, timers.ticksLeft(levelTimer));
+        h = hash(h, timers.ticksLeft(gameOverTimer));
+        h = hash(h, hostilesLeft);
+        h = hash(h, maxBullets);
+        h = hash(h, random.getState());
+        for (int k = 0; k < ships.length; k++) {
+            h = hash(h, lastInput[k]);
+            h = ships[k].checksum(h);
+        }
+        return entities.checksum(h);
+    }
+
+    /**
+     * Mix a value into a checksum. For any checksum so far, different values
+     * give different results.
+     */
+    static long hash(long h, long value) {
+        return Long.rotateLeft((h ^ value) * 0x9e3779b97f4a7c15L, 27);
+    }
+
+    /**
+     * Save the complete state of the World, so that it can be restored with
+     * {@link #restoreState}. Should be called between ticks.
+     *
+     * @param s The snapshot to save into. Its previous contents are replaced.
+     */
+    public void saveState(WorldSnapshot s) {
+        s.width = width;
+        s.height = height;
+        s.tick = tick;
+        s.level = level;
+        s.generatingLevel = generatingLevel;
+        s.levelTicks = timers.ticksLeft(levelTimer);
+        s.gameOver = gameOver;
+        s.gameOverTicks = timers.ticksLeft(gameOverTimer);
+        s.hostilesLeft = hostilesLeft;
+        s.maxBullets = maxBullets;
+        s.randomState = random.getState();
+        s.ensurePlayers(ships.length);
+        s.players = ships.length;
+        System.arraycopy(lastInput, 0, s.lastInput, 0, ships.length);
+        for (SpaceShip ship : ships)
+            ship.save(s);
+        entities.save(s);
+    }
+
+    /**
+     * Put the World back in the state saved in a snapshot. From then on, the
+     * World plays out exactly as the World the snapshot was taken of did.
+     * The snapshot may come from another World of the same size and number
+     * of players.
+     *
+     * @param s The snapshot to restore
+     * @throws IllegalArgumentException if the snapshot is of a World of
+     *                                  another size or number of players, or
+     *                                  is invalid
+     */
+    public void restoreState(WorldSnapshot s) {
+        if (s.width != width || s.height != height)
+            throw new IllegalArgumentException(
+                    "Snapshot is of a World of another size");
+        if (s.players != ships.length)
+            throw new IllegalArgumentException("Snapshot has " + s.players +
+                    " players, not " + ships.length);
+        Arrays.fill(restoredShips, false);
+        for (int i = 0; i < s.size; i++) {
+            if (s.kind[i] != EntityStore.SHIP)
+                continue;
+            if (restoredShips[s.owner[i]])
+                throw new IllegalArgumentException("Snapshot has player " +
+                        s.owner[i] + " twice");
+            restoredShips[s.owner[i]] = true;
+        }
+
+        // Bullets go back to the pool, and the SpaceShips keep their state to
+        // themselves, until they are added again below. Every timer is
+        // started again from the ticks left in the snapshot. An Asteroid has
+        // no state of its own apart from its size, so the ones in the World
+        // are reused for slots of the same size; when rolling back a few
+        // ticks, that is nearly every slot.
+        int before = entities.size;
+        if (restoring.length < before)
+            restoring = new GameObject[Math.max(before, restoring.length * 2)];
+        System.arraycopy(entities.views, 0, restoring, 0, before);
+        entities.clear();
+        timers.clear(s.tick);
+        for (SpaceShip ship : ships)
+            ship.restore(s);
+        for (int i = 0; i < s.size; i++) {
+            GameObject o;
+            switch (s.kind[i]) {
+                case EntityStore.SHIP:
+                    o = ships[s.owner[i]];
+                    break;
+                case EntityStore.BULLET:
+                    Bullet b = bulletPool.acquire();
+                    b.restore(s.bulletTicks[i],
+                            s.owner[i] < 0 ? null : ships[s.owner[i]]);
+                    o = b;
+                    break;
+                default:
+                    GameObject old = i < before ? restoring[i] : null;
+                    if (old instanceof Asteroid &&
+                            old.WIDTH == s.entityWidth[i] &&
+                            old.HEIGHT == s.entityHeight[i])
+                        o = old;
+                    else
+                        o = Asteroid.restore(this, s.entityWidth[i],
+                                s.entityHeight[i]);
+                    break;
+            }
+            entities.add(o);
+        }
+        entities.restore(s);
+        Arrays.fill(restoring, 0, before, null);
+
+        tick = s.tick;
+        level = s.level;
+        generatingLevel = s.generatingLevel;
+        levelTimer = generatingLevel ? timers.schedule(nextLevel,
+                s.levelTicks, TimerWheel.LEVEL) : TimerWheel.NONE;
+        gameOver = s.gameOver;
+        gameOverTimer = s.gameOverTicks > 0 ? timers.schedule(endGame,
+                s.gameOverTicks, TimerWheel.GAME_OVER) : TimerWheel.NONE;
+        System.arraycopy(s.lastInput, 0, lastInput, 0, ships.length);
+        hostilesLeft = s.hostilesLeft;
+        maxBullets = s.maxBullets;
+        random.setState(s.randomState);
+        if (checksums != null)
+            checksums.add(tick, checksum());
+    }
+
+    /**
+     * Run the collision and movement passes of every tick on a ForkJoinPool,
+     * which pays off with many thousands of GameObjects. Each tick gives
+     * exactly the same result as it would in serial mode.
+     *
+     * @param pool  The ForkJoinPool to use, or {@code null} to run every tick
+     *              on the calling thread (the default)
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Measure every tick from now on into the given TickStats.
+     *
+     * @param stats The TickStats to count into, or {@code null} to stop
+     *              measuring (the default)
+     */
+    public void setStats(TickStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Compute the checksum of every tick from now on, starting with the
+     * current one, into a ChecksumLog.
+     *
+     * @param log   The log, or {@code null} to stop computing checksums
+     */
+    public void setChecksumLog(ChecksumLog log) {
+        checksums = log;
+        if (log != null)
+            log.add(tick, checksum());
+    }
+
+    /**
+     * Scatter debris from every Asteroid and SpaceShip destroyed from now
+     * on into a ParticleSystem, which is moved on every tick.
+     *
+     * @param particles The ParticleSystem, or {@code null} for no debris (the
+     *                  default)
+     */
+    void setParticles(ParticleSystem particles) {
+        this.particles = particles;
+    }
+
+    /**
+     * Returns the log the checksum of every tick goes to.
+     *
+     * @return  The log, or {@code null} if checksums are not computed
+     */
+    public ChecksumLog getChecksumLog() {
+        return checksums;
+    }
+
+    /**
+     * Returns the maximum number of Bullets each SpaceShip may have on the
+     * screen.
+     *
+     * @return  The maximum number of Bullets
+     */
+    public int getMaxBullets() {
+        return maxBullets;
+    }
+
+    /**
+     * Set the maximum number of Bullets each SpaceShip may have on the
+     * screen.
+     * 
+     * @param max   The new maximum number.
+     */
+    public void setMaxBullets (int max) {
+        maxBullets = max;
+    }
+}
@@ -0,0 +1,96 @@
+package asteroid;
+
+/**
+ * WorldRandom is the source of every random number in a World. Each World has
+ * its own, so Worlds that are simulated at the same time do not share (and
+ * contend for) a generator, and a World started with the same seed and given
+ * the same input plays out exactly the same way.
+ *
+ * It is the SplitMix64 generator, the same one as
+ * java.util.SplittableRandom, except that its state can be read and restored
+ * so that a World can be saved and resumed in the middle of a game.
+ *
+ * @author Daniel Ge
+ */
+public final class WorldRandom {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+    private long state;
+
+    /**
+     * Creates a new WorldRandom.
+     *
+     * @param seed  The seed. Two WorldRandoms with the same seed return the
+     *              same numbers.
+     */
+    public WorldRandom(long seed) {
+        state = seed;
+    }
+
+    /**
+     * Returns a seed that is very likely to be different from the seed
+     * returned by any other call, for when a game does not need to be
+     * reproduced.
+     *
+     * @return  A new seed
+     */
+    public static long newSeed() {
+        return mix(System.nanoTime() ^ System.identityHashCode(new Object()));
+    }
+
+    /**
+     * Returns the next pseudo-random long.
+     *
+     * @return  A long, uniformly distributed over all longs
+     */
+    public long nextLong() {
+        return mix(state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * Returns the next pseudo-random double, like Math.random().
+     *
+     * @return  A double in [0.0, 1.0)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Returns a new WorldRandom whose numbers are independent of this one's.
+     * Use it to give each of several Worlds (e.g. in a batch of simulations)
+     * its own stream from a single seed.
+     *
+     * @return  A new WorldRandom
+     */
+    public WorldRandom split() {
+        return new WorldRandom(nextLong());
+    }
+
+    /**
+     * Returns the state of the generator, from which {@link #setState}
+     * continues the same sequence.
+     *
+     * @return  The state of the generator
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Restore a state returned by {@link #getState}.
+     *
+     * @param state The state to continue from
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    // Stafford's variant 13 of the MurmurHash3 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
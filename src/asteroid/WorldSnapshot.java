@@ -0,0 +1,276 @@
+package asteroid;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A WorldSnapshot is a copy of the complete state of a World at the start of
+ * a tick: every GameObject with its position, velocity, orientation, size and
+ * whether it is destroyed, plus the score, hyperspace state and Bullet count
+ * of every SpaceShip, the level, the pending delays and the state of the
+ * random number generator. Restoring it makes a World play out exactly as the
+ * original did from that tick on. Positions and velocities are in 16.16
+ * fixed point, as in the World.
+ *
+ * The state is kept in primitive arrays that are reused when the same
+ * WorldSnapshot is saved into again, so saving every tick does not allocate.
+ *
+ * @author Daniel Ge
+ * @see World#saveState
+ * @see World#restoreState
+ */
+public final class WorldSnapshot {
+    // Bits of the flags byte of each GameObject when written out
+    private static final int DESTROYED = 1;
+
+    // Bytes written for the World, for each SpaceShip and for each GameObject
+    private static final int HEADER_BYTES = 4 * 4 + 8 + 3 * 4 + 1 + 4 + 8 + 4;
+    private static final int SHIP_BYTES = 5 * 4 + 8 + 1 + 3 * 4;
+    private static final int ENTITY_BYTES = 3 + 8 * 4 + 8 + 4;
+
+    // The World. The *Ticks fields are the ticks left on the timers of the
+    // World (counting the tick they run out during), or 0 if not running.
+    int width, height;
+    long tick;
+    int level;
+    boolean generatingLevel;
+    int levelTicks;
+    boolean gameOver;
+    int gameOverTicks;
+    int hostilesLeft;
+    int maxBullets;
+    long randomState;
+
+    // The SpaceShips, player by player, which are kept even when they are not
+    // in the global list.
+    int players;
+    int[] lastInput = new int[0];
+    int[] shipX = new int[0], shipY = new int[0];
+    int[] shipVelocityX = new int[0], shipVelocityY = new int[0];
+    double[] shipTheta = new double[0];
+    boolean[] shipIsDestroyed = new boolean[0];
+    int[] score = new int[0];
+    int[] bullets = new int[0];
+    int[] hyperspaceTicks = new int[0];
+    boolean[] hyperspace = new boolean[0];
+    boolean[] thrusting = new boolean[0];
+
+    // The global list, slot by slot. bulletTicks is only used for Bullets.
+    // owner is the player of a SpaceShip or of the SpaceShip that fired a
+    // Bullet, or -1.
+    int size;
+    int[] x = new int[0], y = new int[0];
+    int[] previousX = new int[0], previousY = new int[0];
+    int[] entityWidth = new int[0], entityHeight = new int[0];
+    int[] velocityX = new int[0], velocityY = new int[0];
+    double[] theta = new double[0];
+    boolean[] destroyed = new boolean[0];
+    byte[] kind = new byte[0];
+    int[] bulletTicks = new int[0];
+    int[] owner = new int[0];
+
+    /**
+     * Creates a new, empty WorldSnapshot to save a World into.
+     */
+    public WorldSnapshot() {
+    }
+
+    /**
+     * Returns the tick the snapshot was taken at, i.e. the number of ticks
+     * the World had been stepped.
+     *
+     * @return  The tick
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the number of GameObjects in the snapshot.
+     *
+     * @return  The number of GameObjects
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of players, i.e. of SpaceShips, in the snapshot.
+     *
+     * @return  The number of players
+     */
+    public int players() {
+        return players;
+    }
+
+    /**
+     * Make room for the given number of players.
+     */
+    void ensurePlayers(int capacity) {
+        if (shipX.length >= capacity)
+            return;
+        lastInput = new int[capacity];
+        shipX = new int[capacity];
+        shipY = new int[capacity];
+        shipVelocityX = new int[capacity];
+        shipVelocityY = new int[capacity];
+        shipTheta = new double[capacity];
+        shipIsDestroyed = new boolean[capacity];
+        score = new int[capacity];
+        bullets = new int[capacity];
+        hyperspaceTicks = new int[capacity];
+        hyperspace = new boolean[capacity];
+        thrusting = new boolean[capacity];
+    }
+
+    /**
+     * Make room for the given number of GameObjects.
+     */
+    void ensureCapacity(int capacity) {
+        if (x.length >= capacity)
+            return;
+        x = new int[capacity];
+        y = new int[capacity];
+        previousX = new int[capacity];
+        previousY = new int[capacity];
+        entityWidth = new int[capacity];
+        entityHeight = new int[capacity];
+        velocityX = new int[capacity];
+        velocityY = new int[capacity];
+        theta = new double[capacity];
+        destroyed = new boolean[capacity];
+        kind = new byte[capacity];
+        bulletTicks = new int[capacity];
+        owner = new int[capacity];
+    }
+
+    /**
+     * Returns the number of bytes {@link #write} takes.
+     *
+     * @return  The size of the snapshot in bytes
+     */
+    public int byteSize() {
+        return HEADER_BYTES + players * SHIP_BYTES + size * ENTITY_BYTES;
+    }
+
+    /**
+     * Write the snapshot at the position of a buffer, which must have
+     * {@link #byteSize} bytes remaining.
+     *
+     * @param out   The buffer to write to
+     */
+    public void write(ByteBuffer out) {
+        out.putInt(width);
+        out.putInt(height);
+        out.putInt(size);
+        out.putInt(level);
+        out.putLong(tick);
+        out.putInt(levelTicks);
+        out.putInt(gameOverTicks);
+        out.putInt(hostilesLeft);
+        out.put((byte) ((generatingLevel ? 1 : 0) | (gameOver ? 2 : 0)));
+        out.putInt(maxBullets);
+        out.putLong(randomState);
+        out.putInt(players);
+
+        for (int k = 0; k < players; k++) {
+            out.putInt(lastInput[k]);
+            out.putInt(shipX[k]);
+            out.putInt(shipY[k]);
+            out.putInt(shipVelocityX[k]);
+            out.putInt(shipVelocityY[k]);
+            out.putDouble(shipTheta[k]);
+            out.put((byte) ((shipIsDestroyed[k] ? 1 : 0) |
+                    (hyperspace[k] ? 2 : 0) | (thrusting[k] ? 4 : 0)));
+            out.putInt(score[k]);
+            out.putInt(bullets[k]);
+            out.putInt(hyperspaceTicks[k]);
+        }
+
+        for (int i = 0; i < size; i++) {
+            out.put(kind[i]);
+            out.put((byte) (destroyed[i] ? DESTROYED : 0));
+            out.put((byte) owner[i]);
+            out.putInt(x[i]);
+            out.putInt(y[i]);
+            out.putInt(previousX[i]);
+            out.putInt(previousY[i]);
+            out.putInt(entityWidth[i]);
+            out.putInt(entityHeight[i]);
+            out.putInt(velocityX[i]);
+            out.putInt(velocityY[i]);
+            out.putDouble(theta[i]);
+            out.putInt(bulletTicks[i]);
+        }
+    }
+
+    /**
+     * Read a snapshot written by {@link #write} from the position of a
+     * buffer, replacing the contents of this WorldSnapshot.
+     *
+     * @param in    The buffer to read from
+     * @throws IllegalArgumentException if the buffer does not hold a valid
+     *                                  snapshot
+     */
+    public void read(ByteBuffer in) {
+        width = in.getInt();
+        height = in.getInt();
+        int n = in.getInt();
+        if (n < 0 || (long) n * ENTITY_BYTES > in.remaining())
+            throw new IllegalArgumentException("Corrupt snapshot");
+        level = in.getInt();
+        tick = in.getLong();
+        levelTicks = in.getInt();
+        gameOverTicks = in.getInt();
+        hostilesLeft = in.getInt();
+        int flags = in.get();
+        generatingLevel = (flags & 1) != 0;
+        gameOver = (flags & 2) != 0;
+        maxBullets = in.getInt();
+        randomState = in.getLong();
+        int p = in.getInt();
+        if (p < 1 || p > Byte.MAX_VALUE ||
+                p * SHIP_BYTES + (long) n * ENTITY_BYTES > in.remaining())
+            throw new IllegalArgumentException("Corrupt snapshot");
+
+        ensurePlayers(p);
+        players = p;
+        for (int k = 0; k < p; k++) {
+            lastInput[k] = in.getInt();
+            shipX[k] = in.getInt();
+            shipY[k] = in.getInt();
+            shipVelocityX[k] = in.getInt();
+            shipVelocityY[k] = in.getInt();
+            shipTheta[k] = in.getDouble();
+            flags = in.get();
+            shipIsDestroyed[k] = (flags & 1) != 0;
+            hyperspace[k] = (flags & 2) != 0;
+            thrusting[k] = (flags & 4) != 0;
+            score[k] = in.getInt();
+            bullets[k] = in.getInt();
+            hyperspaceTicks[k] = in.getInt();
+        }
+
+        ensureCapacity(n);
+        size = n;
+        for (int i = 0; i < n; i++) {
+            kind[i] = in.get();
+            if (kind[i] < EntityStore.SHIP || kind[i] > EntityStore.BULLET)
+                throw new IllegalArgumentException("Corrupt snapshot");
+            flags = in.get();
+            destroyed[i] = (flags & DESTROYED) != 0;
+            owner[i] = in.get();
+            if (owner[i] >= p || (kind[i] == EntityStore.SHIP && owner[i] < 0))
+                throw new IllegalArgumentException("Corrupt snapshot");
+            x[i] = in.getInt();
+            y[i] = in.getInt();
+            previousX[i] = in.getInt();
+            previousY[i] = in.getInt();
+            entityWidth[i] = in.getInt();
+            entityHeight[i] = in.getInt();
+            velocityX[i] = in.getInt();
+            velocityY[i] = in.getInt();
+            theta[i] = in.getDouble();
+            bulletTicks[i] = in.getInt();
+        }
+    }
+}